@@ -0,0 +1,49 @@
+package maze;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how long each algorithm takes to generate a square maze. Run with
+ * <code>-prof gc</code> (the Ant <code>bench</code> target does) to see the
+ * allocation rate as well.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class GenerationBenchmark {
+
+    @Param({"backtracker", "tiled", "kruskal", "prim", "wilson", "sidewinder", "binarytree"})
+    public String algorithm;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int size;
+
+    private MazeGenerator maze;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        maze = MazeGenerators.create(algorithm, size, size);
+        maze.setSeed(1);
+    }
+
+    @Benchmark
+    public MazeGenerator generate() {
+        maze.generate();
+        return maze;
+    }
+}
@@ -0,0 +1,107 @@
+package maze;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of single wall operations at random locations, checked
+ * and unchecked. The carve benchmarks close each wall again straight after
+ * carving it, on a maze of their own, so every carve removes a wall that is
+ * there; their times are for one carve and one close.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class WallAccessBenchmark {
+
+    private static final int OPERATIONS = 1 << 16;
+
+    @Param({"100", "1000", "10000"})
+    public int size;
+
+    private MazeGenerator maze;
+    private int[] xs;
+    private int[] ys;
+    private int[] directions;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        maze = MazeGenerators.create(MazeGenerators.DEFAULT, size, size);
+        maze.setSeed(1);
+        maze.generate();
+
+        SplittableRandom rand = new SplittableRandom(2);
+        xs = new int[OPERATIONS];
+        ys = new int[OPERATIONS];
+        directions = new int[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            xs[i] = rand.nextInt(size);
+            ys[i] = rand.nextInt(size);
+            directions[i] = rand.nextInt(4);
+        }
+    }
+
+    /**
+     * A maze for the carve benchmarks, with every benchmarked wall present.
+     */
+    @State(Scope.Thread)
+    public static class ClosedWalls {
+
+        private MazeGenerator maze;
+
+        @Setup(Level.Trial)
+        public void setUp(WallAccessBenchmark b) {
+            maze = MazeGenerators.create(MazeGenerators.DEFAULT, b.size, b.size);
+            maze.setSeed(1);
+            maze.generate();
+            for (int i = 0; i < OPERATIONS; i++) {
+                maze.closeWall(b.xs[i], b.ys[i], b.directions[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void isWallPresent(Blackhole bh) {
+        for (int i = 0; i < OPERATIONS; i++) {
+            bh.consume(maze.isWallPresent(xs[i], ys[i], directions[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void carveAndClose(ClosedWalls walls, Blackhole bh) {
+        MazeGenerator m = walls.maze;
+        for (int i = 0; i < OPERATIONS; i++) {
+            bh.consume(m.carve(xs[i], ys[i], directions[i]));
+            m.closeWall(xs[i], ys[i], directions[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void carveUncheckedAndClose(ClosedWalls walls) {
+        MazeGenerator m = walls.maze;
+        for (int i = 0; i < OPERATIONS; i++) {
+            m.carveUnchecked(xs[i], ys[i], directions[i]);
+            m.closeWall(xs[i], ys[i], directions[i]);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package maze;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes rows of walls as text, in the same format as
+ * {@link MazeGenerator#print(java.io.PrintStream)} has always used. Whole
+ * rows are assembled in a reusable buffer and written to the channel in
+ * large chunks. Lines end with the platform line separator, as
+ * <code>println</code> does.
+ */
+public class AsciiRowSink implements RowSink {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final byte[] EOL = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final WritableByteChannel out;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * Creates a sink that writes to a channel. The channel is not closed.
+     *
+     * @param out the target channel
+     */
+    public AsciiRowSink(WritableByteChannel out) {
+        this.out = out;
+    }
+
+    /**
+     * Creates a sink that writes to a stream. The stream is not closed.
+     *
+     * @param out the target stream
+     */
+    public AsciiRowSink(OutputStream out) {
+        this(Channels.newChannel(out));
+    }
+
+    @Override
+    public void horizontalWalls(long[] walls, int width) throws IOException {
+        ByteBuffer buf = reserve(4 * width + 1 + EOL.length);
+        byte[] bytes = buf.array();
+        int pos = buf.position();
+        for (int x = 0; x < width; x++) {
+            boolean wall = (walls[x >>> 6] & (1L << x)) != 0;
+            bytes[pos] = '*';
+            bytes[pos + 1] = ' ';
+            bytes[pos + 2] = wall ? (byte) '-' : (byte) ' ';
+            bytes[pos + 3] = ' ';
+            pos += 4;
+        }
+        bytes[pos++] = '*';
+        pos = putEol(bytes, pos);
+        // Called through Buffer so the class also runs on Java 8, which
+        // lacks ByteBuffer's own overrides
+        ((Buffer) buf).position(pos);
+    }
+
+    @Override
+    public void verticalWalls(long[] walls, int width) throws IOException {
+        ByteBuffer buf = reserve(4 * width + 1 + EOL.length);
+        byte[] bytes = buf.array();
+        int pos = buf.position();
+        for (int x = 0; x <= width; x++) {
+            bytes[pos] = (walls[x >>> 6] & (1L << x)) != 0 ? (byte) '|' : (byte) ' ';
+            if (x == width) {
+                pos++;
+                break;
+            }
+            bytes[pos + 1] = ' ';
+            bytes[pos + 2] = ' ';
+            bytes[pos + 3] = ' ';
+            pos += 4;
+        }
+        pos = putEol(bytes, pos);
+        ((Buffer) buf).position(pos);
+    }
+
+    /**
+     * Appends the line separator.
+     *
+     * @param bytes the buffer's array
+     * @param pos the position to write at
+     * @return the position after the separator.
+     */
+    private static int putEol(byte[] bytes, int pos) {
+        for (byte b : EOL) {
+            bytes[pos++] = b;
+        }
+        return pos;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        drain();
+    }
+
+    /**
+     * Makes sure the buffer has room for a row, writing out what is already
+     * there if it doesn't.
+     *
+     * @param length the row length, in bytes
+     * @return the buffer.
+     * @throws IOException if the buffer could not be written.
+     */
+    private ByteBuffer reserve(int length) throws IOException {
+        if (buffer.remaining() < length) {
+            drain();
+            if (buffer.capacity() < length) {
+                buffer = ByteBuffer.allocate(length);
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Writes out the buffer.
+     *
+     * @throws IOException if the buffer could not be written.
+     */
+    private void drain() throws IOException {
+        ((Buffer) buffer).flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        ((Buffer) buffer).clear();
+    }
+}
@@ -0,0 +1,207 @@
+package maze;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static maze.MazeGenerator.DOWN;
+import static maze.MazeGenerator.LEFT;
+import static maze.MazeGenerator.RIGHT;
+import static maze.MazeGenerator.UP;
+
+/**
+ * The Recursive Backtracking walk, confined to a rectangle of a maze. This is
+ * shared by {@link RecursiveBacktracker}, which walks the whole maze, and
+ * {@link TiledParallelGenerator}, which walks one tile at a time.
+ * <p>
+ * The walk keeps no objects: visited flags are one bit per cell, and the path
+ * back to the start is a stack of 2-bit directions, 32 to a
+ * <code>long</code>. Both arrays are kept between walks, so walking again at
+ * the same size allocates nothing.</p>
+ * <p>
+ * A walker is not thread-safe. Each thread has its own, from
+ * {@link #current()}, which keeps the scratch space as large as the largest
+ * walk that thread has done, up to {@link #MAX_KEPT_WORDS} words per array.
+ * Bigger arrays are dropped after the walk, so one huge maze doesn't leave
+ * its scratch space pinned to the thread.</p>
+ */
+final class BacktrackWalker {
+
+    private static final ThreadLocal<BacktrackWalker> walkers =
+            ThreadLocal.withInitial(BacktrackWalker::new);
+
+    /**
+     * The largest scratch array kept between walks: 512 KiB, or enough
+     * visited flags for four million cells.
+     */
+    static final int MAX_KEPT_WORDS = 1 << 16;
+
+    private long[] visited = new long[1];
+    private long[] trail = new long[16];
+
+    // Statistics for the last walk
+    private long backtracks;
+    private long peakDepth;
+
+    /**
+     * Gets the current thread's walker.
+     *
+     * @return the walker.
+     */
+    static BacktrackWalker current() {
+        return walkers.get();
+    }
+
+    /**
+     * Carves a perfect maze inside a rectangle. Walls on the rectangle's
+     * border are left alone. Every cell in the rectangle is visited, with one
+     * carve per cell except the first.
+     *
+     * @param maze the maze to carve
+     * @param x0 the rectangle's left X-coordinate
+     * @param y0 the rectangle's top Y-coordinate
+     * @param width the rectangle width
+     * @param height the rectangle height
+     * @param startX the starting X-coordinate, in maze coordinates
+     * @param startY the starting Y-coordinate, in maze coordinates
+     * @param rand the source of randomness
+     */
+    void walk(MazeGenerator maze, int x0, int y0, int width, int height,
+            int startX, int startY, SplittableRandom rand) {
+        long cellCount = (long) width * height;
+        int visitedWords = (int) ((cellCount + 63) >>> 6);
+        if (visited.length < visitedWords) {
+            visited = new long[visitedWords];
+        } else {
+            Arrays.fill(visited, 0, visitedWords, 0L);
+        }
+        long[] visited = this.visited;
+        long[] trail = this.trail;
+
+        // Work in coordinates relative to the rectangle
+        int x = startX - x0;
+        int y = startY - y0;
+        long depth = 0;  // Number of directions on the trail
+        long peak = 0;
+        long pops = 0;
+
+        while (true) {
+            // Mark the current cell as visited
+
+            long index = (long) y * width + x;
+            visited[(int) (index >>> 6)] |= 1L << index;
+
+            // Examine the current cell's neighbours
+            int freeNeighbourCount = 0;
+            int neighbours = 0;  // Up to four 2-bit directions
+            if (y > 0 && !isSet(visited, index - width)) {
+                neighbours |= UP << (2 * freeNeighbourCount++);
+            }
+            if (x < width - 1 && !isSet(visited, index + 1)) {
+                neighbours |= RIGHT << (2 * freeNeighbourCount++);
+            }
+            if (y < height - 1 && !isSet(visited, index + width)) {
+                neighbours |= DOWN << (2 * freeNeighbourCount++);
+            }
+            if (x > 0 && !isSet(visited, index - 1)) {
+                neighbours |= LEFT << (2 * freeNeighbourCount++);
+            }
+
+            // Pick a random free neighbour
+            if (freeNeighbourCount > 0) {
+                int direction = (neighbours >>> (2 * rand.nextInt(freeNeighbourCount))) & 3;
+
+                // Remember how we got there
+                int w = (int) (depth >>> 5);
+                if (w >= trail.length) {
+                    trail = Arrays.copyOf(trail, trail.length * 2);
+                    this.trail = trail;
+                }
+                int shift = (int) (depth & 31) * 2;
+                trail[w] = (trail[w] & ~(3L << shift)) | ((long) direction << shift);
+                depth++;
+                if (depth > peak) {
+                    peak = depth;
+                }
+
+                maze.carveUnchecked(x0 + x, y0 + y, direction);
+                switch (direction) {
+                    case UP:
+                        y--;
+                        break;
+                    case RIGHT:
+                        x++;
+                        break;
+                    case DOWN:
+                        y++;
+                        break;
+                    case LEFT:
+                        x--;
+                        break;
+                }
+            } else {
+                if (depth == 0) {
+                    break;
+                }
+
+                // Step back the way we came
+                depth--;
+                pops++;
+                int direction = (int) (trail[(int) (depth >>> 5)] >>> ((depth & 31) * 2)) & 3;
+                switch (direction) {
+                    case UP:
+                        y++;
+                        break;
+                    case RIGHT:
+                        x--;
+                        break;
+                    case DOWN:
+                        y--;
+                        break;
+                    case LEFT:
+                        x++;
+                        break;
+                }
+            }
+        }
+
+        backtracks = pops;
+        peakDepth = peak;
+
+        // Don't hold on to scratch space from an unusually big walk
+        if (this.visited.length > MAX_KEPT_WORDS) {
+            this.visited = new long[1];
+        }
+        if (this.trail.length > MAX_KEPT_WORDS) {
+            this.trail = new long[16];
+        }
+    }
+
+    /**
+     * Gets the number of steps back taken during the last walk.
+     *
+     * @return the number of backtracks.
+     */
+    long getBacktracks() {
+        return backtracks;
+    }
+
+    /**
+     * Gets the longest path back to the start during the last walk.
+     *
+     * @return the peak stack depth.
+     */
+    long getPeakDepth() {
+        return peakDepth;
+    }
+
+    /**
+     * Checks whether a bit is set in a bit array.
+     *
+     * @param bits the bit array
+     * @param index the bit index
+     * @return whether the bit is set.
+     */
+    private static boolean isSet(long[] bits, long index) {
+        return (bits[(int) (index >>> 6)] & (1L << index)) != 0;
+    }
+}
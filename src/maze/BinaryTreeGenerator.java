@@ -0,0 +1,68 @@
+package maze;
+
+import java.util.SplittableRandom;
+
+/**
+ * Implements a maze generator that uses the Binary Tree algorithm. Every cell
+ * opens either upwards or to the left, at random, except along the top and
+ * left edges where only one choice is possible.
+ * <p>
+ * This produces a maze with open top and left edges and a strong diagonal
+ * bias towards the top-left corner.</p>
+ * <p>
+ * Time is O(n) for n cells with one random bit per cell, and there is no
+ * extra memory at all. Each cell is independent of the others, which makes it
+ * the simplest generator there is.</p>
+ *
+ * @see <a href="http://www.astrolog.org/labyrnth/algrithm.htm">Think Labyrinth:
+ * Maze Algorithms</a>
+ */
+public class BinaryTreeGenerator extends MazeGenerator {
+
+    /**
+     * Creates a new Binary Tree maze generator.
+     *
+     * @param width the maze width
+     * @param height the maze height
+     */
+    public BinaryTreeGenerator(int width, int height) {
+        super(width, height);
+    }
+
+    /**
+     * Generate the maze.
+     */
+    @Override
+    protected void generateMaze() {
+        int width = getWidth();
+        int height = getHeight();
+        SplittableRandom rand = getRandom();
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (y == 0) {
+                    if (x > 0) {
+                        carveUnchecked(x, y, LEFT);
+                    }
+                } else if (x == 0 || rand.nextBoolean()) {
+                    carveUnchecked(x, y, UP);
+                } else {
+                    carveUnchecked(x, y, LEFT);
+                }
+            }
+        }
+
+        long cells = (long) width * height;
+        recordWalk(cells, cells - 1, 0, 0);
+    }
+
+    /**
+     * Returns a string representation of this object.
+     *
+     * @return a string representation of this object.
+     */
+    @Override
+    public String toString() {
+        return "Binary Tree maze generator";
+    }
+}
@@ -0,0 +1,139 @@
+package maze;
+
+/**
+ * A window onto part of a {@link CanvasMaze}, for mazes too big to show all at
+ * once. The camera keeps an entity in the middle of its view, without showing
+ * anything past the edges of a fixed maze, and works out which tiles are in
+ * view so only those need to be drawn.
+ * <p>
+ * Positions are in pixels, with the maze's top-left corner at
+ * <code>(0, 0)</code>.</p>
+ */
+public class Camera {
+
+    private final int width;
+    private final int height;
+
+    // The top-left corner of the view
+    private int x;
+    private int y;
+
+    /**
+     * Creates a camera looking at the top-left corner of the maze.
+     *
+     * @param width the width of the view, in pixels
+     * @param height the height of the view, in pixels
+     * @throws IllegalArgumentException if either size is non-positive.
+     */
+    public Camera(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Size must be positive " + width + " " + height);
+        }
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Moves the view so that an entity is in the middle of it. For a fixed
+     * maze the view then stops at the maze's edges, unless the maze is
+     * smaller than the view.
+     *
+     * @param entity the entity to follow
+     * @param maze the maze it is in
+     */
+    public void follow(Entity entity, CanvasMaze maze) {
+        x = (int) (entity.getX() * CanvasMaze.TILE_SIZE) - width / 2;
+        y = (int) (entity.getY() * CanvasMaze.TILE_SIZE) - height / 2;
+        if (maze.isEndless()) {
+            return;
+        }
+
+        int mazeWidth = (maze.getTotalWIDTH() * 2 - 1) * CanvasMaze.TILE_SIZE + 1;
+        int mazeHeight = maze.getTotalHEIGHT() * CanvasMaze.TILE_SIZE + 1;
+        x = Math.max(0, Math.min(x, mazeWidth - width));
+        y = Math.max(0, Math.min(y, mazeHeight - height));
+    }
+
+    /**
+     * Moves the view so its top-left corner is at a point.
+     *
+     * @param x the X position, in pixels
+     * @param y the Y position, in pixels
+     */
+    public void moveTo(int x, int y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Gets the X position of the view's left edge.
+     *
+     * @return the left edge, in pixels.
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Gets the Y position of the view's top edge.
+     *
+     * @return the top edge, in pixels.
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Gets the width of the view.
+     *
+     * @return the width in pixels.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the view.
+     *
+     * @return the height in pixels.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the first column of tiles that is at least partly in view.
+     *
+     * @return the first visible column.
+     */
+    public int getFirstTileX() {
+        return Math.floorDiv(x, CanvasMaze.TILE_SIZE);
+    }
+
+    /**
+     * Gets the first row of tiles that is at least partly in view.
+     *
+     * @return the first visible row.
+     */
+    public int getFirstTileY() {
+        return Math.floorDiv(y, CanvasMaze.TILE_SIZE);
+    }
+
+    /**
+     * Gets the column just past the last one that is in view.
+     *
+     * @return the end of the visible columns, exclusive.
+     */
+    public int getEndTileX() {
+        return Math.floorDiv(x + width - 1, CanvasMaze.TILE_SIZE) + 1;
+    }
+
+    /**
+     * Gets the row just past the last one that is in view.
+     *
+     * @return the end of the visible rows, exclusive.
+     */
+    public int getEndTileY() {
+        return Math.floorDiv(y + height - 1, CanvasMaze.TILE_SIZE) + 1;
+    }
+}
@@ -1,6 +1,7 @@
 package maze;
 
 import java.awt.*;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 
 public class CanvasMaze {
@@ -17,98 +18,392 @@ public class CanvasMaze {
      * The rendered size of the tile (in pixels)
      */
     public static final int TILE_SIZE = 40;
+    /**
+     * The colours of open and blocked tiles, and of their outlines
+     */
+    private static final Color OPEN = Color.DARK_GRAY;
+    private static final Color OPEN_OUTLINE = OPEN.darker();
+    private static final Color BLOCKED = Color.GRAY;
+    private static final Color BLOCKED_OUTLINE = BLOCKED.darker();
+    private static final Color EXIT = OPEN.brighter();
+    private static final Color EXIT_OUTLINE = EXIT.darker();
+    /**
+     * The largest maze, in pixels, that is drawn once and kept as an image.
+     * Bigger mazes are drawn tile by tile.
+     */
+    private static final long MAX_LAYER_PIXELS = 1 << 24;
     private MazeGenerator maze;
-    private boolean[][] mazeWalls1, mazeWalls2;
+    /**
+     * The maze's tiles, with the exit open. The mirrored half of the playing
+     * field reads the same tiles.
+     */
+    private TileGrid tiles;
+    /**
+     * The maze drawn once, ready to be copied to the screen each frame
+     */
+    private BufferedImage layer;
+    /**
+     * The maze's modification count when the tiles and the layer were made
+     */
+    private int tilesModCount;
+    private int layerModCount;
+    /**
+     * The number of times the layer has been drawn
+     */
+    private int redrawCount;
+    /**
+     * The endless maze, or null if this is a single fixed maze
+     */
+    private ChunkedMaze world;
+    /**
+     * The distance from each tile to the exit, built on first use
+     */
+    private ExitDistanceField exitDistances;
+    /**
+     * The maze's walls and cell distances to the exit once walls have been
+     * moved during play, or null while they haven't
+     */
+    private DynamicMaze dynamicMaze;
 
     public CanvasMaze(int startX, int startY, int width, int height) {
+        this(MazeGenerators.DEFAULT, startX, startY, width, height);
+    }
+
+    /**
+     * Creates a maze using the named generation algorithm.
+     *
+     * @param algorithm the algorithm name
+     * @param startX the starting X-coordinate, in cells
+     * @param startY the starting Y-coordinate, in cells
+     * @param width the width in cells
+     * @param height the height in cells
+     * @see MazeGenerators
+     */
+    public CanvasMaze(String algorithm, int startX, int startY, int width, int height) {
         this.WIDTH = width;
         this.HEIGHT = height;
-        this.maze = new RecursiveBacktracker(WIDTH, HEIGHT, startX, startY);
+        this.maze = MazeGenerators.create(algorithm, WIDTH, HEIGHT);
+        this.maze.setStart(startX, startY);
         this.maze.generate();
-        this.maze.print(System.out);
+    }
+
+    /**
+     * Creates a maze from one that is already generated, such as one taken
+     * from a {@link MazePool}.
+     *
+     * @param maze the generated maze
+     */
+    public CanvasMaze(MazeGenerator maze) {
+        this.WIDTH = maze.getWidth();
+        this.HEIGHT = maze.getHeight();
+        this.maze = maze;
+    }
+
+    /**
+     * Creates a view onto an endless maze. There is no exit and no mirrored
+     * half; walls are looked up in the endless maze's chunk cache.
+     *
+     * @param world the endless maze
+     * @param width the visible width in cells
+     * @param height the visible height in cells
+     */
+    public CanvasMaze(ChunkedMaze world, int width, int height) {
+        this.WIDTH = width;
+        this.HEIGHT = height;
+        this.world = world;
     }
 
     public void paint(Graphics2D g2d) {
-        //Laberinto
+        if (world != null) {
+            paintEndless(g2d, 0, 0, getTotalWIDTH(), getTotalHEIGHT());
+            return;
+        }
 
-        mazeWalls1 = convTileCoord(this.maze.getHorizWalls(), this.maze.getVertWalls());
-        mazeWalls2 = invert(mazeWalls1);
+        // The maze is drawn once and copied to the screen after that. Walls
+        // moved during play are patched into the drawing.
+        TileGrid current = getTiles();
+        int fieldWidth = getTotalWIDTH() * 2 - 1;
+        if ((long) fieldWidth * current.getHeight() * TILE_SIZE * TILE_SIZE > MAX_LAYER_PIXELS) {
+            paintTiles(g2d, current, 0, 0, fieldWidth, current.getHeight());
+            return;
+        }
+        if (layer == null || layerModCount != tilesModCount) {
+            layer = g2d.getDeviceConfiguration().createCompatibleImage(
+                    (fieldWidth * TILE_SIZE) + 1, (current.getHeight() * TILE_SIZE) + 1);
+            Graphics2D lg = layer.createGraphics();
+            paintTiles(lg, current, 0, 0, fieldWidth, current.getHeight());
+            lg.dispose();
+            layerModCount = tilesModCount;
+            redrawCount++;
+        }
+        g2d.drawImage(layer, 0, 0, null);
+    }
 
-        for (int x = 0; x < getTotalWIDTH(); x++) {
-            for (int y = 0; y < getTotalHEIGHT(); y++) {
+    /**
+     * Draws the part of the maze a camera can see. Only the tiles in view are
+     * drawn, so this takes the same time however big the maze is. The
+     * graphics context should already be moved so that the camera's corner
+     * is at the top-left of the view.
+     *
+     * @param g2d the graphics context
+     * @param camera the camera
+     */
+    public void paint(Graphics2D g2d, Camera camera) {
+        int x0 = camera.getFirstTileX();
+        int y0 = camera.getFirstTileY();
+        int x1 = camera.getEndTileX();
+        int y1 = camera.getEndTileY();
+        if (world != null) {
+            paintEndless(g2d, x0, y0, x1, y1);
+            return;
+        }
+
+        TileGrid current = getTiles();
+        paintTiles(g2d, current,
+                Math.max(x0, 0), Math.max(y0, 0),
+                Math.min(x1, getTotalWIDTH() * 2 - 1), Math.min(y1, current.getHeight()));
+    }
+
+    /**
+     * Draws a range of tiles of the fixed maze. The columns are drawn from
+     * left to right, so each tile covers the outline the one before it drew
+     * over its edge.
+     *
+     * @param g2d the graphics context
+     * @param tiles the tiles to draw
+     * @param x0 the first column
+     * @param y0 the first row
+     * @param x1 the column past the last one
+     * @param y1 the row past the last one
+     */
+    private void paintTiles(Graphics2D g2d, TileGrid tiles, int x0, int y0, int x1, int y1) {
+        int exitX = getTotalWIDTH() - 1;
+        for (int x = x0; x < x1; x++) {
+            for (int y = y0; y < y1; y++) {
 
                 // so if the cell is blocks, draw a light grey block
                 // otherwise use a dark gray
-                g2d.setColor(Color.DARK_GRAY);
-                if (mazeWalls1[x][y]) {
-                    g2d.setColor(Color.GRAY);
+                Color fill = OPEN;
+                Color outline = OPEN_OUTLINE;
+                if (tiles.isBlocked(tileX(x), y)) {
+                    fill = BLOCKED;
+                    outline = BLOCKED_OUTLINE;
+                }
+                if (x == exitX && y == getTotalHEIGHT() - 1) {
+                    fill = EXIT;
+                    outline = EXIT_OUTLINE;
                 }
 
                 // draw the rectangle with a dark outline
+                g2d.setColor(fill);
+                g2d.fillRect(x * TILE_SIZE, y * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+                g2d.setColor(outline);
+                g2d.drawRect(x * TILE_SIZE, y * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+            }
+        }
+    }
+
+    /**
+     * Draws a range of tiles of the endless maze.
+     *
+     * @param g2d the graphics context
+     * @param x0 the first column
+     * @param y0 the first row
+     * @param x1 the column past the last one
+     * @param y1 the row past the last one
+     */
+    private void paintEndless(Graphics2D g2d, int x0, int y0, int x1, int y1) {
+        for (int x = x0; x < x1; x++) {
+            for (int y = y0; y < y1; y++) {
+                boolean blocked = world.isTileBlocked(x, y);
+                g2d.setColor(blocked ? BLOCKED : OPEN);
                 g2d.fillRect(x * TILE_SIZE, y * TILE_SIZE, TILE_SIZE, TILE_SIZE);
-                g2d.setColor(g2d.getColor().darker());
+                g2d.setColor(blocked ? BLOCKED_OUTLINE : OPEN_OUTLINE);
                 g2d.drawRect(x * TILE_SIZE, y * TILE_SIZE, TILE_SIZE, TILE_SIZE);
             }
         }
+    }
 
-        for (int x = 0; x < getTotalWIDTH(); x++) {
-            for (int y = 0; y < getTotalHEIGHT(); y++) {
+    /**
+     * Lays out a maze as tiles, with the exit opened in its right-hand
+     * border. The tiles are built a word at a time from the maze's walls.
+     * The playing field is these tiles and their mirror image, sharing the
+     * last column; use {@link #tileX(int)} to find a field column's tile.
+     *
+     * @param view the maze
+     * @return the tiles, <code>getTotalWIDTH()</code> wide.
+     */
+    public TileGrid convTileCoord(MazeView view) {
+        TileGrid grid = TileGrid.fromMaze(view);
+        grid.set(grid.getWidth() - 1, grid.getHeight() - 2, false);
+        grid.set(grid.getWidth() - 1, grid.getHeight() - 1, false);
+        return grid;
+    }
 
-                // so if the cell is blocks, draw a light grey block
-                // otherwise use a dark gray
-                g2d.setColor(Color.DARK_GRAY);
-                if (mazeWalls2[x][y]) {
-                    g2d.setColor(Color.GRAY);
-                }
-                if (x == 0 && y == getTotalHEIGHT() - 2) {
-                    g2d.setColor(Color.DARK_GRAY);
-                }
-                if (x == 0 && y == getTotalHEIGHT() - 1) {
-                    g2d.setColor(Color.DARK_GRAY);
-                    g2d.setColor(g2d.getColor().brighter());
-                }
+    /**
+     * Finds which column of the maze's tiles a column of the playing field
+     * shows. Columns past the middle are the mirror image of those before
+     * it.
+     *
+     * @param x the column of the playing field
+     * @return the column of the maze's tiles.
+     */
+    private int tileX(int x) {
+        int last = getTotalWIDTH() - 1;
+        return x <= last ? x : 2 * last - x;
+    }
 
-                // draw the rectangle with a dark outline
-                g2d.fillRect((x + getTotalWIDTH() - 1) * TILE_SIZE, y * TILE_SIZE, TILE_SIZE, TILE_SIZE);
-                g2d.setColor(g2d.getColor().darker());
-                g2d.drawRect((x + getTotalWIDTH() - 1) * TILE_SIZE, y * TILE_SIZE, TILE_SIZE, TILE_SIZE);
-            }
+    /**
+     * Gets the tiles of the fixed maze, laying them out again if the maze has
+     * changed since they were made.
+     *
+     * @return the tiles.
+     */
+    private TileGrid getTiles() {
+        if (tiles == null || tilesModCount != maze.getModCount()) {
+            tiles = convTileCoord(this.maze);
+            tilesModCount = maze.getModCount();
+            exitDistances = null;
+            dynamicMaze = null;
         }
+        return tiles;
+    }
 
+    /**
+     * Gets the number of times the maze has been drawn again because it
+     * changed. Anything copied from the old drawing is out of date once this
+     * goes up.
+     *
+     * @return the redraw count.
+     */
+    public int getRedrawCount() {
+        return redrawCount;
     }
 
-    public boolean[][] convTileCoord(boolean[] horiz, boolean[] vert) {
-        boolean[][] tiles = new boolean[WIDTH * 2 + 1][HEIGHT * 2 + 1];
-        int rowBase;
-        for (int y = 0; y < HEIGHT * 2 + 1; y++) {
-            for (int x = 0; x < WIDTH * 2 + 1; x++) {
-                if (x % 2 == 0 && y % 2 == 0) {
-                    tiles[x][y] = true;
-                } else if (x == 0 || y == 0 || x == WIDTH * 2 || y == HEIGHT * 2) {
-                    tiles[x][y] = true;
-                } else if (x % 2 != 0 && y % 2 != 0) {
-                    tiles[x][y] = false;
-                }
-            }
+    /**
+     * Throws away the tiles and the drawn maze, so they are made again on
+     * next use. Changes made through the maze's own methods are noticed
+     * without this; call it after changing the walls some other way.
+     */
+    public void invalidate() {
+        tiles = null;
+        layer = null;
+        exitDistances = null;
+        dynamicMaze = null;
+    }
+
+    /**
+     * Opens a wall during play. Only the wall's tile is changed, in both
+     * halves of the playing field, and only the cells that get nearer the
+     * exit have their distances worked out again.
+     *
+     * @param x the cell's X-coordinate
+     * @param y the cell's Y-coordinate
+     * @param direction the wall's direction from the cell
+     * @return whether the wall existed and was removed.
+     * @throws IllegalArgumentException if the direction value is invalid.
+     * @throws IndexOutOfBoundsException if the coordinate is out of range.
+     * @throws UnsupportedOperationException if the maze is endless or
+     * read-only.
+     */
+    public boolean openWall(int x, int y, int direction) {
+        return moveWall(x, y, direction, false);
+    }
+
+    /**
+     * Closes a wall during play. Only the wall's tile is changed, in both
+     * halves of the playing field, and only the cells that lose their
+     * shortest path have their distances worked out again.
+     *
+     * @param x the cell's X-coordinate
+     * @param y the cell's Y-coordinate
+     * @param direction the wall's direction from the cell
+     * @return whether the wall was absent and was added.
+     * @throws IllegalArgumentException if the direction value is invalid.
+     * @throws IndexOutOfBoundsException if the coordinate is out of range.
+     * @throws UnsupportedOperationException if the maze is endless or
+     * read-only.
+     */
+    public boolean closeWall(int x, int y, int direction) {
+        return moveWall(x, y, direction, true);
+    }
+
+    /**
+     * Opens or closes a wall, and patches the tiles and the drawn maze to
+     * match instead of making them again.
+     *
+     * @param x the cell's X-coordinate
+     * @param y the cell's Y-coordinate
+     * @param direction the wall's direction from the cell
+     * @param close whether to close the wall
+     * @return whether the wall changed.
+     */
+    private boolean moveWall(int x, int y, int direction, boolean close) {
+        if (world != null) {
+            throw new UnsupportedOperationException("Endless mazes have fixed walls");
+        }
+        TileGrid current = getTiles();
+        if (dynamicMaze == null) {
+            dynamicMaze = new DynamicMaze(maze, WIDTH - 1, HEIGHT - 1);
+        }
+        boolean changed = close
+                ? dynamicMaze.closeWall(x, y, direction)
+                : dynamicMaze.openWall(x, y, direction);
+        if (!changed) {
+            return false;
         }
 
-        for (int y = 0; y < HEIGHT; y++) {
+        boolean layerCurrent = layer != null && layerModCount == tilesModCount;
+        tilesModCount = maze.getModCount();
+        exitDistances = null;
 
-            rowBase = y * WIDTH;
-            for (int x = 0; x < WIDTH; x++) {
-                if (horiz[rowBase + x]) {
-                    tiles[x * 2 + 1][y * 2] = true;
-                }
-            }
+        int tx = x * 2 + 1;
+        int ty = y * 2 + 1;
+        switch (direction) {
+            case MazeGenerator.UP:
+                ty--;
+                break;
+            case MazeGenerator.RIGHT:
+                tx++;
+                break;
+            case MazeGenerator.DOWN:
+                ty++;
+                break;
+            default:
+                tx--;
+                break;
+        }
+        if (tx == 0 || ty == 0 || tx == current.getWidth() - 1 || ty == current.getHeight() - 1) {
+            return true;  // The outer border is drawn solid either way
+        }
+        current.set(tx, ty, close);
 
-            rowBase = y * (WIDTH + 1);
-            for (int x = 0; x < WIDTH; x++) {
-                if (vert[rowBase + x]) {
-                    tiles[x * 2][y * 2 + 1] = true;
-                }
-            }
+        if (layerCurrent) {
+            Graphics2D lg = layer.createGraphics();
+            repaintTile(lg, current, tx, ty);
+            repaintTile(lg, current, 2 * (current.getWidth() - 1) - tx, ty);
+            lg.dispose();
+            layerModCount = tilesModCount;
+            redrawCount++;
         }
-        return tiles;
+        return true;
+    }
+
+    /**
+     * Draws one tile of the playing field again. Its outline overlaps the
+     * tiles around it, so those are drawn too, in the usual order, but only
+     * inside the tile's own square.
+     *
+     * @param g2d the graphics context
+     * @param current the tiles
+     * @param x the tile's column of the playing field
+     * @param y the tile's row
+     */
+    private void repaintTile(Graphics2D g2d, TileGrid current, int x, int y) {
+        g2d.setClip(x * TILE_SIZE, y * TILE_SIZE, TILE_SIZE + 1, TILE_SIZE + 1);
+        paintTiles(g2d, current,
+                Math.max(x - 1, 0), Math.max(y - 1, 0),
+                Math.min(x + 2, getTotalWIDTH() * 2 - 1), Math.min(y + 2, current.getHeight()));
     }
 
     /**
@@ -121,23 +416,120 @@ public class CanvasMaze {
      * @return True if the location is blocked
      */
     public boolean blocked(float x, float y) {
+        if (world != null) {
+            return world.isTileBlocked((long) Math.floor(x), (long) Math.floor(y));
+        }
+
         // look up the right cell (based on simply rounding the floating
-        // values) and check the value
-        if ((int) x == getTotalWIDTH() - 1 && (int) y == getTotalHEIGHT() - 2) {
-            return false;
+        // values) and check the value. The exit is open in the tiles
+        // themselves, and the mirrored half reads the same tiles.
+        TileGrid grid = getTiles();
+        int tx = (int) x;
+        int last = grid.getWidth() - 1;
+        return grid.isBlocked(tx <= last ? tx : 2 * last - tx, (int) y);
+    }
+
+    /**
+     * Gets the distance from every tile to the exit. This is worked out the
+     * first time it is asked for, and is then shared by every caller. Moving
+     * a wall throws it away; use {@link #getDistanceToExit(float, float)}
+     * while walls are moving.
+     *
+     * @return the distance field, or null if the maze is endless
+     */
+    public ExitDistanceField getExitDistances() {
+        if (world != null) {
+            return null;
         }
-        if ((int) x == getTotalWIDTH() - 1 && (int) y == getTotalHEIGHT() - 1) {
-            return false;
+        getTiles();
+        if (exitDistances == null) {
+            exitDistances = new ExitDistanceField(this);
+        }
+        return exitDistances;
+    }
+
+    /**
+     * Gets the distance to the exit from the tile containing a point, such as
+     * an entity's position. Until walls are moved with
+     * {@link #openWall(int, int, int)} or {@link #closeWall(int, int, int)}
+     * this reads the {@link ExitDistanceField}. After that it is worked out
+     * from the cells' distances, which are repaired as the walls move, so the
+     * whole field is never searched again during play.
+     *
+     * @param x the X position, in tiles
+     * @param y the Y position, in tiles
+     * @return the number of steps to the exit, or
+     * {@link ExitDistanceField#UNREACHABLE}.
+     */
+    public int getDistanceToExit(float x, float y) {
+        if (world != null) {
+            return ExitDistanceField.UNREACHABLE;
+        }
+        TileGrid current = getTiles();
+        if (dynamicMaze == null) {
+            return getExitDistances().getDistance(x, y);
+        }
+
+        int fx = (int) Math.floor(x);
+        int ty = (int) Math.floor(y);
+        int last = current.getWidth() - 1;
+        if (fx < 0 || 2 * last < fx) {
+            return ExitDistanceField.UNREACHABLE;
         }
-        if ((int) x < getTotalWIDTH()) {
-            return mazeWalls1[(int) x][(int) y];
+        int tx = fx <= last ? fx : 2 * last - fx;
+        if (current.isBlocked(tx, ty)) {
+            return ExitDistanceField.UNREACHABLE;
         }
-        return mazeWalls2[(int) x - getTotalWIDTH() + 1][(int) y];
+        if (tx == last) {
+            return ty == current.getHeight() - 1 ? 0 : 1;  // The exit
+        }
+
+        // Cells are two tiles apart, and the exit is two tiles past the last
+        // cell. An open wall is one tile past the nearer of its two cells.
+        int d;
+        if ((tx & 1) == 0) {
+            d = nearer(tx / 2 - 1, ty / 2, tx / 2, ty / 2);
+        } else if ((ty & 1) == 0) {
+            d = nearer(tx / 2, ty / 2 - 1, tx / 2, ty / 2);
+        } else {
+            int cell = dynamicMaze.getDistance(tx / 2, ty / 2);
+            return cell == DynamicMaze.UNREACHABLE ? ExitDistanceField.UNREACHABLE : cell * 2 + 2;
+        }
+        return d == DynamicMaze.UNREACHABLE ? ExitDistanceField.UNREACHABLE : d * 2 + 3;
+    }
+
+    /**
+     * Gets the distance to the exit of the nearer of two cells.
+     *
+     * @param x0 the first cell's X-coordinate
+     * @param y0 the first cell's Y-coordinate
+     * @param x1 the second cell's X-coordinate
+     * @param y1 the second cell's Y-coordinate
+     * @return the nearer cell's distance, or {@link DynamicMaze#UNREACHABLE}
+     * if neither can reach the exit.
+     */
+    private int nearer(int x0, int y0, int x1, int y1) {
+        int d0 = dynamicMaze.getDistance(x0, y0);
+        int d1 = dynamicMaze.getDistance(x1, y1);
+        if (d0 == DynamicMaze.UNREACHABLE) {
+            return d1;
+        }
+        return d1 == DynamicMaze.UNREACHABLE ? d0 : Math.min(d0, d1);
+    }
+
+    /**
+     * Checks whether this is a view onto an endless maze, which has no exit.
+     *
+     * @return true if the maze is endless
+     */
+    public boolean isEndless() {
+        return world != null;
     }
 
     public void setSize(int WIDTH, int HEIGHT) {
         this.WIDTH = WIDTH;
         this.HEIGHT = HEIGHT;
+        invalidate();
     }
 
     public int getTotalWIDTH() {
@@ -148,17 +540,6 @@ public class CanvasMaze {
         return HEIGHT * 2 + 1;
     }
 
-    public boolean[][] invert(boolean[][] arr) {
-        boolean[][] inverted = new boolean[getTotalWIDTH()][getTotalHEIGHT()];
-        for (int y = 0; y < getTotalHEIGHT(); y++) {
-            for (int x = 0; x < getTotalWIDTH(); x++) {
-                inverted[x][y] = arr[getTotalWIDTH() - x - 1][y];
-            }
-        }
-
-        return inverted;
-    }
-
     public int getTILE_SIZE() {
         return TILE_SIZE;
     }
@@ -0,0 +1,94 @@
+package maze;
+
+/**
+ * Generates one square chunk of an endless maze. The inside of the chunk is
+ * a perfect maze carved by the Recursive Backtracking walk, and each of the
+ * four borders has exactly one door in it. A door's position depends only on
+ * the world seed and the two chunks it joins, so both chunks agree on it
+ * without ever seeing each other. Every chunk is connected inside and to all
+ * four neighbours, so the whole endless maze is connected.
+ * <p>
+ * The chunks together are not a perfect maze: there are loops that pass
+ * through several chunks.</p>
+ *
+ * @see ChunkedMaze
+ */
+public class ChunkGenerator extends MazeGenerator {
+
+    private final long worldSeed;
+    private final int chunkX;
+    private final int chunkY;
+
+    /**
+     * Creates a generator for one chunk.
+     *
+     * @param size the chunk width and height, in cells
+     * @param worldSeed the seed of the whole endless maze
+     * @param chunkX the chunk's X-coordinate, in chunks
+     * @param chunkY the chunk's Y-coordinate, in chunks
+     */
+    public ChunkGenerator(int size, long worldSeed, int chunkX, int chunkY) {
+        super(size, size);
+
+        this.worldSeed = worldSeed;
+        this.chunkX = chunkX;
+        this.chunkY = chunkY;
+        setSeed(mix(worldSeed, chunkX, chunkY, 2));
+    }
+
+    /**
+     * Generate the chunk.
+     */
+    @Override
+    protected void generateMaze() {
+        int size = getWidth();
+
+        BacktrackWalker.current().walk(this, 0, 0, size, size,
+                getRandom().nextInt(size), getRandom().nextInt(size), getRandom());
+
+        // One door per border, shared with the neighbour on the other side
+        carveUnchecked(size - 1, door(chunkX, chunkY, 0), RIGHT);
+        carveUnchecked(0, door(chunkX - 1, chunkY, 0), LEFT);
+        carveUnchecked(door(chunkX, chunkY, 1), size - 1, DOWN);
+        carveUnchecked(door(chunkX, chunkY - 1, 1), 0, UP);
+    }
+
+    /**
+     * Gets the position of a door along a border.
+     *
+     * @param x the X-coordinate of the chunk left of or above the border
+     * @param y the Y-coordinate of the chunk left of or above the border
+     * @param axis 0 for a vertical border, 1 for a horizontal one
+     * @return the door's row or column within the border.
+     */
+    private int door(int x, int y, int axis) {
+        return (int) ((mix(worldSeed, x, y, axis) >>> 1) % getWidth());
+    }
+
+    /**
+     * Mixes a seed and a location into a well-distributed 64-bit value, using
+     * the SplitMix64 finalizer.
+     *
+     * @param seed the world seed
+     * @param x an X-coordinate
+     * @param y a Y-coordinate
+     * @param salt distinguishes different uses of the same location
+     * @return the mixed value.
+     */
+    static long mix(long seed, int x, int y, int salt) {
+        long z = seed + 0x9e3779b97f4a7c15L * (((long) x << 32 | (y & 0xffffffffL)) * 4 + salt + 1);
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns a string representation of this object.
+     *
+     * @return a string representation of this object.
+     */
+    @Override
+    public String toString() {
+        return "Endless maze chunk (" + chunkX + ", " + chunkY + ")";
+    }
+}
@@ -0,0 +1,146 @@
+package maze;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * An endless maze, split into square chunks that are generated when first
+ * needed. Each chunk is generated from a seed derived from the world seed and
+ * the chunk's coordinates, so a chunk that is evicted and needed again comes
+ * back exactly the same. Chunks are kept in a least recently used cache whose
+ * size is bounded by a memory budget, so memory use stays constant no matter
+ * how far the maze is explored.
+ * <p>
+ * Besides cells, the maze can be queried as tiles, in the same layout that
+ * {@link CanvasMaze} uses: tile <code>(2x + 1, 2y + 1)</code> is the inside of
+ * cell <code>(x, y)</code>, tiles with both coordinates even are corner
+ * posts, and the others are walls.</p>
+ *
+ * @see ChunkGenerator
+ */
+public class ChunkedMaze {
+
+    // Rough per-chunk cost besides the walls: objects and array headers
+    private static final long CHUNK_OVERHEAD = 256;
+
+    private final int chunkSize;
+    private final long seed;
+    private final int maxChunks;
+
+    // Generated chunks, least recently used first. Guarded by this.
+    private final LinkedHashMap<Long, ChunkGenerator> chunks = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Creates a new endless maze.
+     *
+     * @param chunkSize the chunk width and height, in cells
+     * @param seed the world seed
+     * @param memoryBudget the most memory, in bytes, to spend on cached chunks;
+     * at least one chunk is always kept
+     * @throws IllegalArgumentException if the chunk size is non-positive.
+     */
+    public ChunkedMaze(int chunkSize, long seed, long memoryBudget) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive " + chunkSize);
+        }
+
+        this.chunkSize = chunkSize;
+        this.seed = seed;
+
+        long chunkBytes = 2 * WallBits.wordCount((long) chunkSize * (chunkSize + 1)) * 8 + CHUNK_OVERHEAD;
+        this.maxChunks = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryBudget / chunkBytes));
+    }
+
+    /**
+     * Gets the chunk width and height.
+     *
+     * @return the chunk size, in cells.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Gets the world seed.
+     *
+     * @return the seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the number of chunks currently cached.
+     *
+     * @return the number of cached chunks.
+     */
+    public synchronized int getCachedChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * Gets a chunk, generating it if it isn't cached.
+     *
+     * @param chunkX the chunk's X-coordinate, in chunks
+     * @param chunkY the chunk's Y-coordinate, in chunks
+     * @return the chunk.
+     */
+    public synchronized ChunkGenerator getChunk(int chunkX, int chunkY) {
+        long key = ((long) chunkX << 32) | (chunkY & 0xffffffffL);
+        ChunkGenerator chunk = chunks.get(key);
+        if (chunk == null) {
+            chunk = new ChunkGenerator(chunkSize, seed, chunkX, chunkY);
+            chunk.generate();
+            chunks.put(key, chunk);
+
+            if (chunks.size() > maxChunks) {
+                Iterator<Long> eldest = chunks.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Checks if the specified wall is present.
+     *
+     * @param x the cell's X-coordinate
+     * @param y the cell's Y-coordinate
+     * @param direction the wall's direction from the cell
+     * @return whether the specified wall is present.
+     * @throws IllegalArgumentException if the direction value is invalid.
+     */
+    public boolean isWallPresent(long x, long y, int direction) {
+        // Long divisors, so these are the overloads Java 8 has
+        long size = chunkSize;
+        ChunkGenerator chunk = getChunk((int) Math.floorDiv(x, size),
+                (int) Math.floorDiv(y, size));
+        return chunk.isWallPresent((int) Math.floorMod(x, size),
+                (int) Math.floorMod(y, size), direction);
+    }
+
+    /**
+     * Checks if a tile is solid.
+     *
+     * @param tileX the tile's X-coordinate
+     * @param tileY the tile's Y-coordinate
+     * @return whether the tile is a post or a wall that is present.
+     */
+    public boolean isTileBlocked(long tileX, long tileY) {
+        boolean oddX = (tileX & 1) != 0;
+        boolean oddY = (tileY & 1) != 0;
+        if (oddX && oddY) {
+            return false;  // Inside a cell
+        }
+        if (!oddX && !oddY) {
+            return true;  // Corner post
+        }
+
+        long x = Math.floorDiv(tileX, 2L);
+        long y = Math.floorDiv(tileY, 2L);
+        return oddX
+                ? isWallPresent(x, y, MazeGenerator.UP)
+                : isWallPresent(x, y, MazeGenerator.LEFT);
+    }
+}
@@ -0,0 +1,411 @@
+package maze;
+
+import java.util.Arrays;
+
+/**
+ * A maze whose walls can open and close while it is being played, which keeps
+ * track of how far every cell is from the exit as the walls change.
+ * <p>
+ * The distances are found once with a breadth-first search from the exit.
+ * After that, each change only repairs the cells it affects:</p>
+ * <ul>
+ * <li>Opening a wall can only make cells nearer. The search is restarted from
+ *     the far side of the new opening, and stops at cells that don't get any
+ *     nearer.</li>
+ * <li>Closing a wall can only make cells farther. If the wall wasn't on a
+ *     shortest path, nothing changes. Otherwise the cells that lost their only
+ *     shortest path are found, and their distances are searched again from
+ *     the cells around them.</li>
+ * </ul>
+ * <p>
+ * In a perfect maze, closing a wall cuts off everything behind it, so that
+ * part of the maze is all that gets searched. Cells that can't reach the
+ * exit have a distance of {@link #UNREACHABLE}.</p>
+ * <p>
+ * Change the walls only through this object so that the distances stay
+ * correct. This class is not thread-safe.</p>
+ */
+public class DynamicMaze {
+
+    /**
+     * The distance of a cell that can't reach the exit.
+     */
+    public static final int UNREACHABLE = -1;
+
+    private final MazeGenerator maze;
+    private final int width;
+    private final int height;
+    private final int exit;
+    private final int[] offsets;
+
+    private final int[] distances;
+    private int reachableCount;
+
+    // Scratch space for repairs. Cells are marked with the current stamp.
+    private final int[] queue;
+    private final long[] seeds;
+    private final int[] queued;
+    private final int[] affected;
+    private int stamp;
+    private int lastRepairSize;
+
+    /**
+     * Creates a dynamic view of a generated maze.
+     *
+     * @param maze the maze, which must not be read-only
+     * @param exitX the exit cell's X-coordinate
+     * @param exitY the exit cell's Y-coordinate
+     * @throws IllegalArgumentException if the maze has too many cells.
+     * @throws IndexOutOfBoundsException if the exit is outside the maze.
+     */
+    public DynamicMaze(MazeGenerator maze, int exitX, int exitY) {
+        width = maze.getWidth();
+        height = maze.getHeight();
+        if ((long) width * height > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many cells: " + width + " " + height);
+        }
+        if (exitX < 0 || width <= exitX) {
+            throw new IndexOutOfBoundsException("X out of range: " + exitX);
+        }
+        if (exitY < 0 || height <= exitY) {
+            throw new IndexOutOfBoundsException("Y out of range: " + exitY);
+        }
+
+        this.maze = maze;
+        this.exit = exitY * width + exitX;
+        this.offsets = MazeAnalyzer.offsets(width);
+
+        int count = width * height;
+        distances = new int[count];
+        queue = new int[count];
+        seeds = new long[count];
+        queued = new int[count];
+        affected = new int[count];
+
+        // The first search covers the whole maze
+        Arrays.fill(distances, UNREACHABLE);
+        distances[exit] = 0;
+        queue[0] = exit;
+        reachableCount = 1;
+        lastRepairSize = 1 + spread(1);
+    }
+
+    /**
+     * Gets the maze.
+     *
+     * @return the maze.
+     */
+    public MazeGenerator getMaze() {
+        return maze;
+    }
+
+    /**
+     * Gets the distance from a cell to the exit.
+     *
+     * @param x the cell's X-coordinate
+     * @param y the cell's Y-coordinate
+     * @return the number of steps to the exit, or {@link #UNREACHABLE}.
+     * @throws IndexOutOfBoundsException if the coordinate is out of range.
+     */
+    public int getDistance(int x, int y) {
+        if (x < 0 || width <= x) {
+            throw new IndexOutOfBoundsException("X out of range: " + x);
+        }
+        if (y < 0 || height <= y) {
+            throw new IndexOutOfBoundsException("Y out of range: " + y);
+        }
+        return distances[y * width + x];
+    }
+
+    /**
+     * Checks if a cell can reach the exit.
+     *
+     * @param x the cell's X-coordinate
+     * @param y the cell's Y-coordinate
+     * @return whether there is a path to the exit.
+     * @throws IndexOutOfBoundsException if the coordinate is out of range.
+     */
+    public boolean isReachable(int x, int y) {
+        return getDistance(x, y) != UNREACHABLE;
+    }
+
+    /**
+     * Gets the number of cells that can reach the exit, including the exit.
+     *
+     * @return the number of reachable cells.
+     */
+    public int getReachableCount() {
+        return reachableCount;
+    }
+
+    /**
+     * Gets the number of cells whose distance was searched again by the last
+     * change. This shows how local the repairs are.
+     *
+     * @return the number of cells repaired by the last change.
+     */
+    public int getLastRepairSize() {
+        return lastRepairSize;
+    }
+
+    /**
+     * Opens a wall and brings nearer every cell that gets a shorter path.
+     *
+     * @param x the cell's X-coordinate
+     * @param y the cell's Y-coordinate
+     * @param direction the wall's direction from the cell
+     * @return whether the wall existed and was removed.
+     * @throws IllegalArgumentException if the direction value is invalid.
+     * @throws IndexOutOfBoundsException if the coordinate is out of range.
+     * @throws UnsupportedOperationException if the maze is read-only.
+     */
+    public boolean openWall(int x, int y, int direction) {
+        lastRepairSize = 0;
+        boolean changed = maze.openWall(x, y, direction);
+        if (!changed || isBorder(x, y, direction)) {
+            return changed;
+        }
+
+        int a = y * width + x;
+        int b = a + offsets[direction];
+        int da = distances[a];
+        int db = distances[b];
+        if (da == UNREACHABLE && db == UNREACHABLE) {
+            return true;
+        }
+
+        // Start from the far side, if it gets nearer
+        int near = da == UNREACHABLE || (db != UNREACHABLE && db < da) ? b : a;
+        int far = near == a ? b : a;
+        int d = distances[near] + 1;
+        if (distances[far] != UNREACHABLE && distances[far] <= d) {
+            return true;
+        }
+        if (distances[far] == UNREACHABLE) {
+            reachableCount++;
+        }
+        distances[far] = d;
+        queue[0] = far;
+        lastRepairSize = 1 + spread(1);
+        return true;
+    }
+
+    /**
+     * Closes a wall and moves farther away every cell that loses its
+     * shortest path.
+     *
+     * @param x the cell's X-coordinate
+     * @param y the cell's Y-coordinate
+     * @param direction the wall's direction from the cell
+     * @return whether the wall was absent and was added.
+     * @throws IllegalArgumentException if the direction value is invalid.
+     * @throws IndexOutOfBoundsException if the coordinate is out of range.
+     * @throws UnsupportedOperationException if the maze is read-only.
+     */
+    public boolean closeWall(int x, int y, int direction) {
+        lastRepairSize = 0;
+        boolean changed = maze.closeWall(x, y, direction);
+        if (!changed || isBorder(x, y, direction)) {
+            return changed;
+        }
+
+        // Nothing changes unless one side's shortest path went through here
+        int a = y * width + x;
+        int b = a + offsets[direction];
+        int da = distances[a];
+        int db = distances[b];
+        if (da == UNREACHABLE || db == UNREACHABLE || Math.abs(da - db) != 1) {
+            return true;
+        }
+        int child = da > db ? a : b;
+
+        nextStamp();
+        int count = findAffected(child);
+        lastRepairSize = count;
+        if (count == 0) {
+            return true;
+        }
+
+        // Forget the affected cells' distances, then seed each one from its
+        // unaffected neighbours
+        for (int i = 0; i < count; i++) {
+            distances[queue[i]] = UNREACHABLE;
+        }
+        reachableCount -= count;
+        int seedCount = 0;
+        for (int i = 0; i < count; i++) {
+            int cell = queue[i];
+            int best = Integer.MAX_VALUE;
+            int open = passages(cell);
+            while (open != 0) {
+                int next = cell + offsets[Integer.numberOfTrailingZeros(open)];
+                open &= open - 1;
+                if (affected[next] != stamp && distances[next] != UNREACHABLE) {
+                    best = Math.min(best, distances[next] + 1);
+                }
+            }
+            if (best != Integer.MAX_VALUE) {
+                seeds[seedCount++] = ((long) best << 32) | cell;
+            }
+        }
+        Arrays.sort(seeds, 0, seedCount);
+
+        // Search outwards through the affected cells, taking seeds and queued
+        // cells in order of distance
+        int head = 0;
+        int tail = 0;
+        int s = 0;
+        while (s < seedCount || head < tail) {
+            int cell;
+            if (head == tail || (s < seedCount
+                    && (int) (seeds[s] >>> 32) <= distances[queue[head]])) {
+                cell = (int) seeds[s];
+                int d = (int) (seeds[s++] >>> 32);
+                if (distances[cell] != UNREACHABLE) {
+                    continue;  // Already reached more cheaply
+                }
+                distances[cell] = d;
+                reachableCount++;
+            } else {
+                cell = queue[head++];
+            }
+
+            int d = distances[cell] + 1;
+            int open = passages(cell);
+            while (open != 0) {
+                int next = cell + offsets[Integer.numberOfTrailingZeros(open)];
+                open &= open - 1;
+                if (affected[next] == stamp && distances[next] == UNREACHABLE) {
+                    distances[next] = d;
+                    reachableCount++;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the cells that lose every shortest path when a cell loses the one
+     * through its parent. The cells are checked in order of distance, so a
+     * cell's parents are all decided before it is. The affected cells are
+     * left at the front of the queue and marked in {@link #affected}.
+     *
+     * @param child the cell whose parent was cut off
+     * @return the number of affected cells.
+     */
+    private int findAffected(int child) {
+        int head = 0;
+        int tail = 0;
+        int count = 0;
+        queue[tail++] = child;
+        queued[child] = stamp;
+        while (head < tail) {
+            int cell = queue[head++];
+            int d = distances[cell];
+
+            // Keep the cell if another parent still leads to the exit
+            boolean supported = false;
+            int open = passages(cell);
+            for (int o = open; o != 0; o &= o - 1) {
+                int next = cell + offsets[Integer.numberOfTrailingZeros(o)];
+                if (distances[next] == d - 1 && affected[next] != stamp) {
+                    supported = true;
+                    break;
+                }
+            }
+            if (supported) {
+                continue;
+            }
+
+            affected[cell] = stamp;
+            queue[count++] = cell;  // Never overtakes head
+            for (int o = open; o != 0; o &= o - 1) {
+                int next = cell + offsets[Integer.numberOfTrailingZeros(o)];
+                if (distances[next] == d + 1 && queued[next] != stamp) {
+                    queued[next] = stamp;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Spreads shorter distances outwards from the cells in the queue, which
+     * already have their new distances. Cells are only updated when they get
+     * nearer.
+     *
+     * @param tail the number of cells in the queue
+     * @return the number of cells updated, not counting the first ones.
+     */
+    private int spread(int tail) {
+        int head = 0;
+        int updated = 0;
+        while (head < tail) {
+            int cell = queue[head++];
+            int d = distances[cell] + 1;
+            int open = passages(cell);
+            while (open != 0) {
+                int next = cell + offsets[Integer.numberOfTrailingZeros(open)];
+                open &= open - 1;
+                int old = distances[next];
+                if (old == UNREACHABLE || d < old) {
+                    if (old == UNREACHABLE) {
+                        reachableCount++;
+                    }
+                    distances[next] = d;
+                    queue[tail++] = next;
+                    updated++;
+                }
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * Gets the passages out of a cell, ignoring the outer border.
+     *
+     * @param cell the cell index
+     * @return the passage mask.
+     */
+    private int passages(int cell) {
+        int x = cell % width;
+        int y = cell / width;
+        return MazeAnalyzer.passages(maze.getWallMaskUnchecked(x, y), x, y, width, height);
+    }
+
+    /**
+     * Checks if a wall is on the outer border, where it doesn't join two
+     * cells.
+     *
+     * @param x the cell's X-coordinate
+     * @param y the cell's Y-coordinate
+     * @param direction the wall's direction from the cell
+     * @return whether the wall is on the border.
+     */
+    private boolean isBorder(int x, int y, int direction) {
+        switch (direction) {
+            case MazeGenerator.UP:
+                return y == 0;
+            case MazeGenerator.RIGHT:
+                return x == width - 1;
+            case MazeGenerator.DOWN:
+                return y == height - 1;
+            default:
+                return x == 0;
+        }
+    }
+
+    /**
+     * Starts a new repair. The marks are only cleared when the counter wraps
+     * around.
+     */
+    private void nextStamp() {
+        if (++stamp == 0) {
+            Arrays.fill(queued, 0);
+            Arrays.fill(affected, 0);
+            stamp = 1;
+        }
+    }
+}
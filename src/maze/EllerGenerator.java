@@ -0,0 +1,221 @@
+package maze;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates a maze one row at a time using Eller's algorithm, sending each row
+ * to a {@link RowSink} as soon as it is done. Only the current row is kept, so
+ * memory is proportional to the width and the height can be as large as a
+ * <code>long</code> allows.
+ * <p>
+ * Each cell of the current row belongs to a set of cells that are already
+ * connected. Adjacent cells in different sets are joined at random, then at
+ * least one cell of each set is connected down to the next row. The last row
+ * joins every remaining set, which makes the maze perfect.</p>
+ * <p>
+ * This produces a maze with many short dead ends and a slight horizontal
+ * bias, similar to Kruskal's algorithm.</p>
+ *
+ * @see <a href="http://www.astrolog.org/labyrnth/algrithm.htm">Think Labyrinth:
+ * Maze Algorithms</a>
+ */
+public class EllerGenerator {
+
+    private final int width;
+
+    // The seed, and whether it was chosen by the caller
+    private long seed;
+    private boolean seeded;
+
+    // Per-row state. Set labels are kept below width.
+    private final int[] sets;
+    private final int[] parents;
+    private final int[] remaining;
+    private final int[] labels;
+    private final boolean[] down;
+
+    // The rows of walls handed to the sink
+    private final long[] horizWalls;
+    private final long[] vertWalls;
+
+    /**
+     * Creates a new Eller's algorithm generator.
+     *
+     * @param width the maze width, in cells
+     * @throws IllegalArgumentException if the width is non-positive.
+     */
+    public EllerGenerator(int width) {
+        if (width <= 0) {
+            throw new IllegalArgumentException("Width must be positive " + width);
+        }
+
+        this.width = width;
+
+        sets = new int[width];
+        parents = new int[width];
+        remaining = new int[width];
+        labels = new int[width];
+        down = new boolean[width];
+
+        horizWalls = new long[(width + 63) >>> 6];
+        vertWalls = new long[(width + 64) >>> 6];
+    }
+
+    /**
+     * Gets the maze width, in cells.
+     *
+     * @return the maze width in cells.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Sets the seed for all later generations. A maze is fully determined by
+     * its width, height and seed.
+     *
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        this.seeded = true;
+    }
+
+    /**
+     * Gets the seed. After {@link #generate(long, RowSink)}, this is the seed
+     * that was used, whether or not it was set explicitly.
+     *
+     * @return the seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Generates a maze and sends it to the given sink, row by row.
+     *
+     * @param height the maze height, in cells
+     * @param sink receives the rows
+     * @throws IllegalArgumentException if the height is non-positive.
+     * @throws IOException if the sink could not write a row.
+     */
+    public void generate(long height, RowSink sink) throws IOException {
+        if (height <= 0) {
+            throw new IllegalArgumentException("Height must be positive " + height);
+        }
+
+        if (!seeded) {
+            seed = ThreadLocalRandom.current().nextLong();
+        }
+        SplittableRandom rand = new SplittableRandom(seed);
+
+        // Every cell starts in its own set, under a solid top wall
+        for (int x = 0; x < width; x++) {
+            sets[x] = x;
+            parents[x] = x;
+        }
+        setAll(horizWalls, width);
+
+        for (long y = 0; y < height; y++) {
+            boolean last = y == height - 1;
+            sink.horizontalWalls(horizWalls, width);
+
+            // Join adjacent cells in different sets
+            setAll(vertWalls, width + 1);
+            for (int x = 0; x < width - 1; x++) {
+                int a = find(sets[x]);
+                int b = find(sets[x + 1]);
+                if (a != b && (last || rand.nextBoolean())) {
+                    parents[b] = a;
+                    vertWalls[(x + 1) >>> 6] &= ~(1L << (x + 1));
+                }
+            }
+            sink.verticalWalls(vertWalls, width);
+
+            if (last) {
+                break;
+            }
+
+            // Connect at least one cell of each set down
+            Arrays.fill(remaining, 0);
+            for (int x = 0; x < width; x++) {
+                sets[x] = find(sets[x]);
+                remaining[sets[x]]++;
+            }
+            Arrays.fill(labels, -1);
+            setAll(horizWalls, width);
+            for (int x = 0; x < width; x++) {
+                int set = sets[x];
+                down[x] = rand.nextBoolean() || (remaining[set] == 1 && labels[set] < 0);
+                remaining[set]--;
+                if (down[x]) {
+                    labels[set] = 0;  // Mark the set as connected
+                    horizWalls[x >>> 6] &= ~(1L << x);
+                }
+            }
+
+            // Relabel for the next row: carried sets first, then new ones
+            Arrays.fill(labels, -1);
+            int next = 0;
+            for (int x = 0; x < width; x++) {
+                if (down[x]) {
+                    if (labels[sets[x]] < 0) {
+                        labels[sets[x]] = next++;
+                    }
+                    sets[x] = labels[sets[x]];
+                }
+            }
+            for (int x = 0; x < width; x++) {
+                if (!down[x]) {
+                    sets[x] = next++;
+                }
+                parents[x] = x;
+            }
+        }
+
+        // The bottom wall
+        setAll(horizWalls, width);
+        sink.horizontalWalls(horizWalls, width);
+        sink.finish();
+    }
+
+    /**
+     * Finds the representative label of a set, compressing the path.
+     *
+     * @param label a set label
+     * @return the representative label.
+     */
+    private int find(int label) {
+        while (parents[label] != label) {
+            parents[label] = parents[parents[label]];
+            label = parents[label];
+        }
+        return label;
+    }
+
+    /**
+     * Sets the first <code>count</code> bits of a row and clears the rest.
+     *
+     * @param row the row
+     * @param count the number of walls in the row
+     */
+    private static void setAll(long[] row, int count) {
+        Arrays.fill(row, -1L);
+        if ((count & 63) != 0) {
+            row[row.length - 1] = (1L << count) - 1;
+        }
+    }
+
+    /**
+     * Returns a string representation of this object.
+     *
+     * @return a string representation of this object.
+     */
+    @Override
+    public String toString() {
+        return "Eller's algorithm streaming maze generator";
+    }
+}
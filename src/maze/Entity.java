@@ -2,6 +2,7 @@ package maze;
 
 import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.Rectangle;
 import javax.swing.*;
 
 /**
@@ -49,6 +50,33 @@ public class Entity {
     private float sizeY = 0.32f;
     private int flast = 10;
 
+    /**
+     * The top and bottom of the collision box, below the entity's position
+     */
+    private static final float TOP = 0.2f;
+    private static final float BOTTOM = 0.8f;
+    /**
+     * How far short of a wall a move stops, so the entity never touches it
+     */
+    private static final float SKIN = 0.001f;
+    /**
+     * True if hitting a wall slides the entity along it, rather than sending
+     * it back to the start
+     */
+    private boolean sliding;
+
+    // The result of the last sweep: how far along the move the first wall
+    // was hit, whether it was hit moving along the x axis, and the tile edge
+    // that was hit
+    private float hitTime;
+    private boolean hitX;
+    private int hitEdge;
+
+    /**
+     * Where the sprite was last drawn, in pixels
+     */
+    private final Rectangle paintBounds = new Rectangle();
+
     private String player;
     private int ani;
     private boolean winner;
@@ -71,155 +99,251 @@ public class Entity {
         this.winner = false;
     }
 
+    /**
+     * Put this entity back at its start in a new maze, ready for another
+     * round. The sprites are kept.
+     *
+     * @param maze The maze of the new round
+     */
+    public void startRound(CanvasMaze maze) {
+        this.maze = maze;
+        this.x = startX;
+        this.y = startY;
+        this.ani = 1;
+        this.winner = false;
+    }
+
     /**
      * Move this entity a given amount. This may or may not succeed depending on
-     * collisions
+     * collisions. The whole move is checked in one go, so a long move can't
+     * pass through a wall. If a wall is in the way the entity either goes
+     * back to where it started or, if it is sliding, stops at the wall and
+     * carries on along it.
      *
      * @param dx The amount to move on the x axis
      * @param dy The amount to move on the y axis
-     * @return True if the move succeeded
+     * @return True if the move succeeded without hitting a wall
      */
     public boolean move(float dx, float dy) {
-        // work out what the new position of this entity will be
-        float nx = x + dx;
-        float ny = y + dy;
+        if (dx == 0 && dy == 0) {
+            return true;
+        }
 
-        // check if the new position of the entity collides with
-        // anything
-        if (validLocation(nx, ny)) {
-            // if it doesn't then change our position to the new position
-            x = nx;
-            y = ny;
+        // calculate the angle we're facing based on our move
+        ang = Math.atan2(dy, dx) - (Math.PI / 2);
 
-            // and calculate the angle we're facing based on our last move
-            ang = Math.atan2(dy, dx) - (Math.PI / 2);
+        if (!sliding) {
+            if (!sweep(dx, dy)) {
+                // if nothing is in the way then change our position to the
+                // new position
+                x += dx;
+                y += dy;
+                checkWinner();
+                return true;
+            }
 
-            return true;
+            // reaching the exit before the wall still wins
+            if (atExit(y + dy * hitTime)) {
+                x += dx * hitTime;
+                y += dy * hitTime;
+                this.winner = true;
+                return true;
+            }
+
+            // if it wasn't a valid move return tha player to the begining
+            x = this.startX;
+            y = this.startY;
+            return false;
         }
-        x = this.startX;
-        y = this.startY;
 
-        // if it wasn't a valid move return tha player to the begining
-        return false;
+        // move up to the first wall, then on along it with whatever is left
+        // of the move, for at most one wall on each axis and a corner
+        boolean clear = true;
+        for (int i = 0; i < 3 && (dx != 0 || dy != 0); i++) {
+            if (!sweep(dx, dy)) {
+                x += dx;
+                y += dy;
+                break;
+            }
+            clear = false;
+            float rest = 1 - hitTime;
+            if (hitX) {
+                x = dx > 0 ? hitEdge - sizeX - SKIN : hitEdge + sizeX + SKIN;
+                y += dy * hitTime;
+                dx = 0;
+                dy *= rest;
+            } else {
+                y = dy > 0 ? hitEdge - BOTTOM - SKIN : hitEdge - TOP + SKIN;
+                x += dx * hitTime;
+                dy = 0;
+                dx *= rest;
+            }
+        }
+        checkWinner();
+        return clear;
     }
 
     /**
-     * Check if the entity would be at a valid location if its position was as
-     * specified
+     * Sweep the collision box along a move, against every blocked tile it
+     * could meet. A tile only counts if the box isn't already touching it.
+     * On a hit, {@link #hitTime}, {@link #hitX} and {@link #hitEdge} describe
+     * the first one.
      *
-     * @param nx The potential x position for the entity
-     * @param ny The potential y position for the entity
-     * @return True if the new position specified would be valid
+     * @param dx The amount to move on the x axis
+     * @param dy The amount to move on the y axis
+     * @return True if the move hits a wall
      */
-    public boolean validLocation(float nx, float ny) {
-        // here we're going to check some points at the corners of
-        // the player to see whether we're at an invalid location
-        // if any of them are blocked then the location specified
-        // isn't valid
+    private boolean sweep(float dx, float dy) {
+        float minX = x - sizeX;
+        float maxX = x + sizeX;
+        float minY = y + TOP;
+        float maxY = y + BOTTOM;
 
-        if ((int) (ny + (float) 0.2) > maze.getTotalHEIGHT() - 2) {
-            this.winner = true;
-            return true;
-        }
-        if (maze.blocked(nx - sizeX, ny + (float) 0.2)) {
-            return false;
-        }
-        if (maze.blocked(nx + sizeX, ny + (float) 0.2)) {
-            return false;
-        }
-        if (maze.blocked(nx - sizeX, ny + (float) 0.8)) {
-            return false;
+        // every tile the box covers at some point during the move
+        int x0 = (int) Math.floor(Math.min(minX, minX + dx));
+        int x1 = (int) Math.floor(Math.max(maxX, maxX + dx));
+        int y0 = (int) Math.floor(Math.min(minY, minY + dy));
+        int y1 = (int) Math.floor(Math.max(maxY, maxY + dy));
+
+        boolean hit = false;
+        hitTime = 1;
+        for (int ty = y0; ty <= y1; ty++) {
+            for (int tx = x0; tx <= x1; tx++) {
+                if (!maze.blocked(tx, ty)) {
+                    continue;
+                }
+
+                // when the box's span overlaps the tile's on each axis
+                float enterX;
+                float exitX;
+                if (dx > 0) {
+                    enterX = (tx - maxX) / dx;
+                    exitX = (tx + 1 - minX) / dx;
+                } else if (dx < 0) {
+                    enterX = (tx + 1 - minX) / dx;
+                    exitX = (tx - maxX) / dx;
+                } else if (maxX >= tx && minX < tx + 1) {
+                    enterX = Float.NEGATIVE_INFINITY;
+                    exitX = Float.POSITIVE_INFINITY;
+                } else {
+                    continue;
+                }
+                float enterY;
+                float exitY;
+                if (dy > 0) {
+                    enterY = (ty - maxY) / dy;
+                    exitY = (ty + 1 - minY) / dy;
+                } else if (dy < 0) {
+                    enterY = (ty + 1 - minY) / dy;
+                    exitY = (ty - maxY) / dy;
+                } else if (maxY >= ty && minY < ty + 1) {
+                    enterY = Float.NEGATIVE_INFINITY;
+                    exitY = Float.POSITIVE_INFINITY;
+                } else {
+                    continue;
+                }
+
+                float enter = Math.max(enterX, enterY);
+                float exit = Math.min(exitX, exitY);
+                if (enter < 0 || enter > exit || enter > hitTime) {
+                    continue;
+                }
+                if (enter < hitTime || !hit) {
+                    hitTime = enter;
+                    hitX = enterX >= enterY;
+                    if (hitX) {
+                        hitEdge = dx > 0 ? tx : tx + 1;
+                    } else {
+                        hitEdge = dy > 0 ? ty : ty + 1;
+                    }
+                }
+                hit = true;
+            }
         }
-        if (maze.blocked(nx + sizeX, ny + (float) 0.8)) {
-            return false;
+        return hit;
+    }
+
+    /**
+     * Check if this entity has reached the exit at the bottom of the maze.
+     */
+    private void checkWinner() {
+        if (atExit(y)) {
+            this.winner = true;
         }
+    }
+
+    /**
+     * Check if a y position is past the exit at the bottom of the maze.
+     *
+     * @param ny The y position to check
+     * @return True if an entity at this position has won
+     */
+    private boolean atExit(float ny) {
+        return !maze.isEndless() && (int) (ny + TOP) > maze.getTotalHEIGHT() - 2;
+    }
+
+    /**
+     * Set whether hitting a wall slides this entity along it, rather than
+     * sending it back to the start.
+     *
+     * @param sliding True to slide along walls
+     */
+    public void setSliding(boolean sliding) {
+        this.sliding = sliding;
+    }
 
-        // if all the points checked are unblocked then we're in an ok
-        // location
-        return true;
+    /**
+     * Check whether hitting a wall slides this entity along it.
+     *
+     * @return True if this entity slides along walls
+     */
+    public boolean isSliding() {
+        return sliding;
     }
 
     /**
-     * Draw this entity to the graphics context provided.
+     * Draw this entity to the graphics context provided, and move its walking
+     * animation on a frame.
      *
      * @param g The graphics context to which the entity should be drawn
      */
     public void paint(Graphics2D g) {
-        // work out the screen position of the entity based on the
-        // x/y position and the size that tiles are being rendered at. So
-        // if we're at 1.5,1.5 and the tile size is 10 we'd render on screen 
-        // at 15,15.
-        int xp = (int) (CanvasMaze.TILE_SIZE * x);
-        int yp = (int) (CanvasMaze.TILE_SIZE * y);
-        // rotate the sprite based on the current angle and then
-        // draw it
+        paintWalking(g);
+        animate();
+    }
+
+    /**
+     * Draw this entity's current walking frame, without moving the animation
+     * on. This lets the entity be drawn more than once in a frame, such as
+     * in both halves of a split screen.
+     *
+     * @param g The graphics context to which the entity should be drawn
+     */
+    public void paintWalking(Graphics2D g) {
+        paintSprite(g, (this.ani % (4 * flast)) / flast);
+    }
+
+    /**
+     * Move the walking animation on a frame.
+     */
+    public void animate() {
         if (this.ani == 4 * flast) {
             this.ani = 1;
         }
-        int ang = (int) ((this.ang / Math.PI) * 100);
-        switch (ang) {
-            case 0: {
-                g.drawImage(sprites[0][(int) (this.ani / flast)],
-                        (xp - sprites[0][(int) (this.ani / flast)].getWidth(null) / 2),
-                        (yp - sprites[0][(int) (this.ani / flast)].getHeight(null) / 2),
-                        null);
-                break;
-            }
-            case -25: {
-                g.drawImage(sprites[1][(int) (this.ani / flast)],
-                        (xp - sprites[1][(int) (this.ani / flast)].getWidth(null) / 2),
-                        (yp - sprites[1][(int) (this.ani / flast)].getHeight(null) / 2),
-                        null);
-                break;
-            }
-            case -50: {
-                g.drawImage(sprites[2][(int) (this.ani / flast)],
-                        (xp - sprites[2][(int) (this.ani / flast)].getWidth(null) / 2),
-                        (yp - sprites[2][(int) (this.ani / flast)].getHeight(null) / 2),
-                        null);
-                break;
-            }
-            case -75: {
-                g.drawImage(sprites[3][(int) (this.ani / flast)],
-                        (xp - sprites[3][(int) (this.ani / flast)].getWidth(null) / 2),
-                        (yp - sprites[3][(int) (this.ani / flast)].getHeight(null) / 2),
-                        null);
-                break;
-            }
-            case -100: {
-                g.drawImage(sprites[4][(int) (this.ani / flast)],
-                        (xp - sprites[4][(int) (this.ani / flast)].getWidth(null) / 2),
-                        (yp - sprites[4][(int) (this.ani / flast)].getHeight(null) / 2),
-                        null);
-                break;
-            }
-            case -125: {
-                g.drawImage(sprites[5][(int) (this.ani / flast)],
-                        (xp - sprites[5][(int) (this.ani / flast)].getWidth(null) / 2),
-                        (yp - sprites[5][(int) (this.ani / flast)].getHeight(null) / 2),
-                        null);
-                break;
-            }
-            case 50: {
-                g.drawImage(sprites[6][(int) (this.ani / flast)],
-                        (xp - sprites[6][(int) (this.ani / flast)].getWidth(null) / 2),
-                        (yp - sprites[6][(int) (this.ani / flast)].getHeight(null) / 2),
-                        null);
-                break;
-            }
-            case 25: {
-                g.drawImage(sprites[7][(int) (this.ani / flast)],
-                        (xp - sprites[7][(int) (this.ani / flast)].getWidth(null) / 2),
-                        (yp - sprites[7][(int) (this.ani / flast)].getHeight(null) / 2),
-                        null);
-                break;
-            }
-
-        }
         this.ani++;
     }
 
     void paintFrame(Graphics2D g) {
+        paintSprite(g, 0);
+    }
+
+    /**
+     * Draw one frame of this entity's sprite, turned the way it last moved.
+     *
+     * @param g The graphics context to which the entity should be drawn
+     * @param frame The animation frame, from 0 to 3
+     */
+    private void paintSprite(Graphics2D g, int frame) {
         // work out the screen position of the entity based on the
         // x/y position and the size that tiles are being rendered at. So
         // if we're at 1.5,1.5 and the tile size is 10 we'd render on screen 
@@ -231,65 +355,67 @@ public class Entity {
         int ang = (int) ((this.ang / Math.PI) * 100);
         switch (ang) {
             case 0: {
-                g.drawImage(sprites[0][0],
-                        (xp - sprites[0][0].getWidth(null) / 2),
-                        (yp - sprites[0][0].getHeight(null) / 2),
-                        null);
+                drawSprite(g, sprites[0][frame], xp, yp);
                 break;
             }
             case -25: {
-                g.drawImage(sprites[1][0],
-                        (xp - sprites[1][0].getWidth(null) / 2),
-                        (yp - sprites[1][0].getHeight(null) / 2),
-                        null);
+                drawSprite(g, sprites[1][frame], xp, yp);
                 break;
             }
             case -50: {
-                g.drawImage(sprites[2][0],
-                        (xp - sprites[2][0].getWidth(null) / 2),
-                        (yp - sprites[2][0].getHeight(null) / 2),
-                        null);
+                drawSprite(g, sprites[2][frame], xp, yp);
                 break;
             }
             case -75: {
-                g.drawImage(sprites[3][0],
-                        (xp - sprites[3][0].getWidth(null) / 2),
-                        (yp - sprites[3][0].getHeight(null) / 2),
-                        null);
+                drawSprite(g, sprites[3][frame], xp, yp);
                 break;
             }
             case -100: {
-                g.drawImage(sprites[4][0],
-                        (xp - sprites[4][0].getWidth(null) / 2),
-                        (yp - sprites[4][0].getHeight(null) / 2),
-                        null);
+                drawSprite(g, sprites[4][frame], xp, yp);
                 break;
             }
             case -125: {
-                g.drawImage(sprites[5][0],
-                        (xp - sprites[5][0].getWidth(null) / 2),
-                        (yp - sprites[5][0].getHeight(null) / 2),
-                        null);
+                drawSprite(g, sprites[5][frame], xp, yp);
                 break;
             }
             case 50: {
-                g.drawImage(sprites[6][0],
-                        (xp - sprites[6][0].getWidth(null) / 2),
-                        (yp - sprites[6][0].getHeight(null) / 2),
-                        null);
+                drawSprite(g, sprites[6][frame], xp, yp);
                 break;
             }
             case 25: {
-                g.drawImage(sprites[7][0],
-                        (xp - sprites[7][0].getWidth(null) / 2),
-                        (yp - sprites[7][0].getHeight(null) / 2),
-                        null);
+                drawSprite(g, sprites[7][frame], xp, yp);
                 break;
             }
 
         }
     }
 
+    /**
+     * Draw a sprite centred on a point, and remember where it went.
+     *
+     * @param g The graphics context to which the sprite should be drawn
+     * @param sprite The sprite to draw
+     * @param xp The x position of the sprite's centre, in pixels
+     * @param yp The y position of the sprite's centre, in pixels
+     */
+    private void drawSprite(Graphics2D g, Image sprite, int xp, int yp) {
+        int width = sprite.getWidth(null);
+        int height = sprite.getHeight(null);
+        g.drawImage(sprite, xp - width / 2, yp - height / 2, null);
+        paintBounds.setBounds(xp - width / 2, yp - height / 2, Math.max(width, 0), Math.max(height, 0));
+    }
+
+    /**
+     * Get the area this entity's sprite covered when it was last drawn, so
+     * that it can be drawn over again when the entity moves.
+     *
+     * @return The area in pixels, relative to the maze, or an empty rectangle
+     * if the entity hasn't been drawn yet
+     */
+    public Rectangle getPaintBounds() {
+        return new Rectangle(paintBounds);
+    }
+
     public Image[][] fillSprites() {
         this.sprites = new Image[8][4];
         String[][] imagePath = new String[8][4];
@@ -351,8 +477,37 @@ public class Entity {
         return sprites;
     }
 
+    /**
+     * Get the x position of this entity
+     *
+     * @return The x position in grid cells
+     */
+    public float getX() {
+        return x;
+    }
+
+    /**
+     * Get the y position of this entity
+     *
+     * @return The y position in grid cells
+     */
+    public float getY() {
+        return y;
+    }
+
     public boolean isWinner() {
         return winner;
     }
 
+    /**
+     * Get how far this entity is from the exit, measured from the tile under
+     * its centre. This is a single lookup, so it can be called every frame.
+     *
+     * @return The number of tiles to the exit, or
+     * ExitDistanceField.UNREACHABLE if the maze is endless
+     */
+    public int getDistanceToExit() {
+        return maze.getDistanceToExit(x, y + 0.5f);
+    }
+
 }
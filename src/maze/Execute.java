@@ -3,13 +3,14 @@ package maze;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.BufferStrategy;
+import java.util.ArrayDeque;
 import javax.swing.ImageIcon;
 
 /**
  * A very simple example to illustrate how simple tile maps can be used for
- * basic collision. This particular technique only works in certain
- * circumstances and for small time updates. However, this fits many maze based
- * games perfectly.
+ * basic collision. Each move is swept against the tile map, so it works
+ * however much time passes between updates. This fits many maze based games
+ * perfectly.
  *
  * @author Kevin Glass
  */
@@ -24,11 +25,20 @@ public class Execute extends Canvas implements KeyListener {
      * True if the key is currently pressed
      */
     private boolean left, right, up, down, w, a, s, d;
+    /**
+     * True if Enter is pressed, which starts another round once this one is
+     * won
+     */
+    private boolean rematch;
 
     /**
      * The map our player will wander round
      */
     private CanvasMaze maze;
+    /**
+     * The size of the maze, in cells, used again for each new round
+     */
+    private final int mazeWidth, mazeHeight;
     /**
      * The player entity that will be controlled with cursors
      */
@@ -43,7 +53,103 @@ public class Execute extends Canvas implements KeyListener {
     private final static int FRAME_WIDTH = 856;
     private final static int FRAME_HEIGHT = 720;
 
+    /**
+     * Where the maze is drawn in the frame, below the title bar
+     */
+    private final static int MAZE_X = 8;
+    private final static int MAZE_Y = 32;
+
+    /**
+     * The number of buffers in the buffer strategy
+     */
+    private final static int BUFFERS = 2;
+
+    /**
+     * Whether to redraw only the areas the players move over, rather than
+     * the whole frame every time
+     */
+    private final static boolean DIRTY_RENDERING = true;
+
+    /**
+     * The gap between the two halves of a split screen, in pixels
+     */
+    private final static int VIEW_GAP = 8;
+
+    /**
+     * True if the players slide along walls, rather than going back to the
+     * start when they hit one
+     */
+    private final static boolean SLIDING = false;
+
+    /**
+     * The default maze size, in cells
+     */
+    private final static int MAZE_WIDTH = 5;
+    private final static int MAZE_HEIGHT = 8;
+
+    /**
+     * The endless maze's chunk size, in cells, and the memory its chunk
+     * cache may use, in bytes
+     */
+    private final static int CHUNK_SIZE = 16;
+    private final static long CHUNK_MEMORY = 1 << 20;
+
+    /**
+     * The cameras following each player, or null if the whole maze fits in
+     * the window. An endless maze always has them.
+     */
+    private Camera view1, view2;
+
+    /**
+     * The sprites drawn in the last few frames. Each buffer still shows the
+     * sprites from the last time it was drawn to, so these are the areas
+     * that have to be restored from the background
+     */
+    private final ArrayDeque<Rectangle> drawn = new ArrayDeque<>();
+    /**
+     * The number of frames still to be drawn in full
+     */
+    private int fullFrames = BUFFERS;
+    /**
+     * The maze's redraw count when the background was last drawn in full
+     */
+    private int mazeRedraws = -1;
+
+    /**
+     * Keeps the next mazes ready so a round never waits for generation
+     */
+    private final static MazePool mazes = new MazePool(MazeGenerators.DEFAULT, 2, 4);
+
     public Execute() {
+        this(MAZE_WIDTH, MAZE_HEIGHT);
+    }
+
+    /**
+     * Create the game with a maze of the given size. If the maze is too big
+     * for the window, the screen is split in two, each half following one
+     * player.
+     *
+     * @param mazeWidth The maze width, in cells
+     * @param mazeHeight The maze height, in cells
+     */
+    public Execute(int mazeWidth, int mazeHeight) {
+        this(new CanvasMaze(mazes.take(mazeWidth, mazeHeight)), mazeWidth, mazeHeight);
+    }
+
+    /**
+     * Create the game in an endless maze. There is no exit, so nobody wins;
+     * the screen is always split, each half following one player.
+     *
+     * @param world The endless maze
+     */
+    public Execute(ChunkedMaze world) {
+        this(new CanvasMaze(world, MAZE_WIDTH, MAZE_HEIGHT), MAZE_WIDTH, MAZE_HEIGHT);
+    }
+
+    private Execute(CanvasMaze maze, int mazeWidth, int mazeHeight) {
+        this.mazeWidth = mazeWidth;
+        this.mazeHeight = mazeHeight;
+
         // right, I'm going to explain this in detail since it always seems to 
         // confuse. 
 
@@ -76,17 +182,33 @@ public class Execute extends Canvas implements KeyListener {
         frame.setVisible(true);
 
         // create the strategy used for accelerated rendering. 
-        createBufferStrategy(2);
+        createBufferStrategy(BUFFERS);
         strategy = getBufferStrategy();
 
         // create our game objects, a map for the player to wander around
         // and an entity to represent out player
-        maze = new CanvasMaze(0, 0, 5, 8);
-        player1 = new Entity(maze, "PJ1", (float) (-1 + maze.getTotalWIDTH() * 2 - 1.5), 1.1f);
+        this.maze = maze;
+        if (maze.isEndless()) {
+            // There is no mirrored half, so the players start side by side
+            player1 = new Entity(maze, "PJ1", 3.5f, 1.1f);
+        } else {
+            player1 = new Entity(maze, "PJ1", (float) (-1 + maze.getTotalWIDTH() * 2 - 1.5), 1.1f);
+        }
         player2 = new Entity(maze, "PJ2", 1.5f, 1.1f);
+        int mazePixelWidth = (maze.getTotalWIDTH() * 2 - 1) * CanvasMaze.TILE_SIZE + 1;
+        int mazePixelHeight = maze.getTotalHEIGHT() * CanvasMaze.TILE_SIZE + 1;
+        if (maze.isEndless()
+                || mazePixelWidth > FRAME_WIDTH - MAZE_X || mazePixelHeight > FRAME_HEIGHT - MAZE_Y) {
+            int viewWidth = (FRAME_WIDTH - 2 * MAZE_X - VIEW_GAP) / 2;
+            int viewHeight = FRAME_HEIGHT - MAZE_Y - MAZE_X;
+            view1 = new Camera(viewWidth, viewHeight);
+            view2 = new Camera(viewWidth, viewHeight);
+        }
         // start the game loop
         player1.fillSprites();
         player2.fillSprites();
+        player1.setSliding(SLIDING);
+        player2.setSliding(SLIDING);
         gameLoop();
     }
 
@@ -108,25 +230,14 @@ public class Execute extends Canvas implements KeyListener {
         while (gameRunning) {
             g = (Graphics2D) strategy.getDrawGraphics();
 
-            // clear the screen
-            g.setColor(Color.BLACK);
-            g.fillRect(0, 0, FRAME_WIDTH, FRAME_HEIGHT);
-
             // render our game objects
-            g.translate(8, 32);
-            maze.paint(g);
-            if (left || right || up || down) {
-                player1.paint(g);
-            } else {
-                player1.paintFrame(g);
-            }
-            if (w || a || s || d) {
-                player2.paint(g);
+            if (view1 == null) {
+                paintWhole(g);
             } else {
-                player2.paintFrame(g);
+                paintSplit(g);
             }
+
             if (player1.isWinner()) {
-                gameRunning = false;
                 g.setColor(Color.GREEN);
                 g.fillRect(FRAME_WIDTH / 2, 0, FRAME_WIDTH / 2, FRAME_HEIGHT);
                 g.drawImage(this.win, FRAME_WIDTH * 3 / 4 - this.win.getWidth(null) / 2,
@@ -136,7 +247,6 @@ public class Execute extends Canvas implements KeyListener {
                 g.drawImage(this.loose, FRAME_WIDTH / 4 - this.loose.getWidth(null) / 2,
                          FRAME_HEIGHT / 2 - this.loose.getHeight(null) / 2, null);
             } else if (player2.isWinner()) {
-                gameRunning = false;
                 g.setColor(Color.RED);
                 g.fillRect(FRAME_WIDTH / 2, 0, FRAME_WIDTH / 2, FRAME_HEIGHT);
                 g.drawImage(this.loose, FRAME_WIDTH * 3 / 4 - this.loose.getWidth(null) / 2,
@@ -149,6 +259,9 @@ public class Execute extends Canvas implements KeyListener {
             // flip the buffer so we can see the rendering
             g.dispose();
             strategy.show();
+            if (strategy.contentsRestored() || strategy.contentsLost()) {
+                fullFrames = BUFFERS;
+            }
 
             // pause a bit so that we don't choke the system
             try {
@@ -162,21 +275,157 @@ public class Execute extends Canvas implements KeyListener {
             long delta = (System.nanoTime() - last) / 1000000;
             last = System.nanoTime();
 
-            // now this needs a bit of explaining. The amount of time
-            // passed between rendering can vary quite alot. If we were
-            // to move our player based on the normal delta it would
-            // at times jump a long distance (if the delta value got really
-            // high). So we divide the amount of time passed into segments
-            // of 5 milliseconds and update based on that
-            for (int i = 0; i < delta / 5; i++) {
-                logic(5);
+            // once the round is won, the next one starts when Enter is
+            // pressed. The pool has had the whole round to get its maze
+            // ready, so it starts straight away.
+            if (player1.isWinner() || player2.isWinner()) {
+                if (rematch) {
+                    newRound();
+                }
+                continue;
             }
-            // after we've run through the segments if there is anything
-            // left over we update for that
-            if ((delta % 5) != 0) {
-                logic(delta % 5);
+
+            // the players' moves are swept against the walls, so a long
+            // frame can't carry them through one and the whole of the time
+            // passed is handled in a single update
+            logic(delta);
+        }
+    }
+
+    /**
+     * Start another round in a new maze of the same size, taken from the
+     * pool. Both players go back to their starts.
+     */
+    private void newRound() {
+        maze = new CanvasMaze(mazes.take(mazeWidth, mazeHeight));
+        player1.startRound(maze);
+        player2.startRound(maze);
+
+        // Nothing on screen is from this maze, so draw everything again
+        drawn.clear();
+        fullFrames = BUFFERS;
+        mazeRedraws = -1;
+        rematch = false;
+    }
+
+    /**
+     * Draws the whole maze and both players, when the maze fits in the
+     * window. Unless the background has changed, only the areas the players
+     * were drawn over are restored.
+     *
+     * @param g the graphics context
+     */
+    private void paintWhole(Graphics2D g) {
+        g.translate(MAZE_X, MAZE_Y);
+        if (!DIRTY_RENDERING || fullFrames > 0) {
+            paintBackground(g, null);
+            fullFrames = Math.max(fullFrames - 1, 0);
+        } else {
+            for (Rectangle r : drawn) {
+                paintBackground(g, r);
             }
         }
+        if (maze.getRedrawCount() != mazeRedraws) {
+            // The maze changed, so every buffer is out of date
+            mazeRedraws = maze.getRedrawCount();
+            paintBackground(g, null);
+            fullFrames = BUFFERS - 1;
+        }
+
+        if (left || right || up || down) {
+            player1.paint(g);
+        } else {
+            player1.paintFrame(g);
+        }
+        if (w || a || s || d) {
+            player2.paint(g);
+        } else {
+            player2.paintFrame(g);
+        }
+        if (drawn.size() == 2 * BUFFERS) {
+            // Forget the oldest frame's two sprites
+            drawn.removeFirst();
+            drawn.removeFirst();
+        }
+        drawn.addLast(player1.getPaintBounds());
+        drawn.addLast(player2.getPaintBounds());
+        g.translate(-MAZE_X, -MAZE_Y);
+    }
+
+    /**
+     * Draws the split screen: player 2 on the left and player 1 on the right,
+     * each half following its player. The cameras move every frame, so the
+     * whole frame is drawn, but only the tiles in view.
+     *
+     * @param g the graphics context
+     */
+    private void paintSplit(Graphics2D g) {
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, FRAME_WIDTH, FRAME_HEIGHT);
+
+        view1.follow(player1, maze);
+        view2.follow(player2, maze);
+        paintView(g, view2, MAZE_X, MAZE_Y);
+        paintView(g, view1, MAZE_X + view2.getWidth() + VIEW_GAP, MAZE_Y);
+
+        // Both players can be in both halves, so the animations are moved on
+        // once both are drawn
+        if (left || right || up || down) {
+            player1.animate();
+        }
+        if (w || a || s || d) {
+            player2.animate();
+        }
+    }
+
+    /**
+     * Draws what one camera sees into part of the frame.
+     *
+     * @param g the graphics context
+     * @param camera the camera
+     * @param viewX the X position of the view in the frame
+     * @param viewY the Y position of the view in the frame
+     */
+    private void paintView(Graphics2D g, Camera camera, int viewX, int viewY) {
+        Graphics2D view = (Graphics2D) g.create(viewX, viewY, camera.getWidth(), camera.getHeight());
+        view.translate(-camera.getX(), -camera.getY());
+        maze.paint(view, camera);
+        if (left || right || up || down) {
+            player1.paintWalking(view);
+        } else {
+            player1.paintFrame(view);
+        }
+        if (w || a || s || d) {
+            player2.paintWalking(view);
+        } else {
+            player2.paintFrame(view);
+        }
+        view.dispose();
+    }
+
+    /**
+     * Draws the background: the black frame, and the maze on top of it.
+     *
+     * @param g the graphics context, translated to the maze's corner
+     * @param area the area to draw, relative to the maze, or null to draw the
+     * whole frame
+     */
+    private void paintBackground(Graphics2D g, Rectangle area) {
+        if (area == null) {
+            g.setClip(null);
+            g.setColor(Color.BLACK);
+            g.fillRect(-MAZE_X, -MAZE_Y, FRAME_WIDTH, FRAME_HEIGHT);
+            maze.paint(g);
+            return;
+        }
+        if (area.isEmpty()) {
+            return;
+        }
+        g.setClip(area);
+        g.setColor(Color.BLACK);
+        g.fillRect(area.x, area.y, area.width, area.height);
+        maze.paint(g);
+        g.setClip(null);
     }
 
     /**
@@ -269,6 +518,9 @@ public class Execute extends Canvas implements KeyListener {
         if (e.getKeyCode() == KeyEvent.VK_S) {
             s = true;
         }
+        if (e.getKeyCode() == KeyEvent.VK_ENTER) {
+            rematch = true;
+        }
     }
 
     /**
@@ -302,14 +554,30 @@ public class Execute extends Canvas implements KeyListener {
         if (e.getKeyCode() == KeyEvent.VK_S) {
             s = false;
         }
+        if (e.getKeyCode() == KeyEvent.VK_ENTER) {
+            rematch = false;
+        }
     }
 
     /**
      * The entry point to our example code
      *
-     * @param argv The arguments passed into the program
+     * @param argv The arguments passed into the program, optionally the maze
+     * width and height in cells, or "endless" for an endless maze
      */
     public static void main(String[] argv) {
-        Execute execute = new Execute();
+        if (argv.length >= 1 && argv[0].equals("endless")) {
+            Execute execute = new Execute(new ChunkedMaze(CHUNK_SIZE, System.nanoTime(), CHUNK_MEMORY));
+            return;
+        }
+
+        int width = MAZE_WIDTH;
+        int height = MAZE_HEIGHT;
+        if (argv.length >= 2) {
+            width = Integer.parseInt(argv[0]);
+            height = Integer.parseInt(argv[1]);
+        }
+        mazes.prepare(width, height);
+        Execute execute = new Execute(width, height);
     }
 }
@@ -0,0 +1,183 @@
+package maze;
+
+import java.util.Arrays;
+
+/**
+ * The walking distance from every tile of a {@link CanvasMaze} to the exit,
+ * found once with a breadth-first search outwards from the exit. After that,
+ * asking how far a tile is from the exit is a single array lookup, so it can
+ * be done for every player on every frame.
+ * <p>
+ * The tiles are those of the whole playing field: the maze and its mirror
+ * image, side by side, sharing the middle column. The exit tiles are the open
+ * tiles on the bottom row, where a player wins. Distances are counted in
+ * tiles, moving up, down, left or right.</p>
+ * <p>
+ * Distances are stored as <code>char</code>s, two bytes per tile, unless the
+ * field is too big for that, in which case they are stored as
+ * <code>int</code>s.</p>
+ */
+public final class ExitDistanceField {
+
+    /**
+     * The distance reported for blocked tiles, tiles that can't reach the
+     * exit and tiles outside the field.
+     */
+    public static final int UNREACHABLE = -1;
+
+    private static final char CHAR_UNREACHABLE = Character.MAX_VALUE;
+
+    private final int width;
+    private final int height;
+    private final int maxDistance;
+
+    // Exactly one of these holds the distances, indexed by y * width + x
+    private final char[] shortDistances;
+    private final int[] distances;
+
+    /**
+     * Creates the distance field for a maze.
+     *
+     * @param maze the maze
+     * @throws IllegalArgumentException if the maze is endless, since it has
+     * no exit.
+     */
+    public ExitDistanceField(CanvasMaze maze) {
+        if (maze.isEndless()) {
+            throw new IllegalArgumentException("Endless mazes have no exit");
+        }
+
+        width = maze.getTotalWIDTH() * 2 - 1;
+        height = maze.getTotalHEIGHT();
+        int count = width * height;
+
+        // Search outwards from every exit tile at once
+        int[] dist = new int[count];
+        Arrays.fill(dist, UNREACHABLE);
+        int[] queue = new int[count];
+        int head = 0;
+        int tail = 0;
+        for (int x = 0; x < width; x++) {
+            if (!maze.blocked(x, height - 1)) {
+                int tile = (height - 1) * width + x;
+                dist[tile] = 0;
+                queue[tail++] = tile;
+            }
+        }
+
+        int max = 0;
+        while (head < tail) {
+            int tile = queue[head++];
+            int x = tile % width;
+            int y = tile / width;
+            int d = dist[tile] + 1;
+            if (y > 0) {
+                tail = visit(maze, dist, queue, tail, x, y - 1, d);
+            }
+            if (x < width - 1) {
+                tail = visit(maze, dist, queue, tail, x + 1, y, d);
+            }
+            if (y < height - 1) {
+                tail = visit(maze, dist, queue, tail, x, y + 1, d);
+            }
+            if (x > 0) {
+                tail = visit(maze, dist, queue, tail, x - 1, y, d);
+            }
+            max = dist[tile];
+        }
+        maxDistance = max;
+
+        // Keep the compact form when every distance fits
+        if (max < CHAR_UNREACHABLE) {
+            shortDistances = new char[count];
+            for (int i = 0; i < count; i++) {
+                shortDistances[i] = dist[i] < 0 ? CHAR_UNREACHABLE : (char) dist[i];
+            }
+            distances = null;
+        } else {
+            shortDistances = null;
+            distances = dist;
+        }
+    }
+
+    /**
+     * Queues a tile if it is open and not yet reached.
+     *
+     * @param maze the maze
+     * @param dist the distances so far
+     * @param queue the search queue
+     * @param tail the end of the queue
+     * @param x the tile's X-coordinate
+     * @param y the tile's Y-coordinate
+     * @param d the tile's distance, if it is queued
+     * @return the new end of the queue.
+     */
+    private int visit(CanvasMaze maze, int[] dist, int[] queue, int tail, int x, int y, int d) {
+        int tile = y * width + x;
+        if (dist[tile] == UNREACHABLE && !maze.blocked(x, y)) {
+            dist[tile] = d;
+            queue[tail++] = tile;
+        }
+        return tail;
+    }
+
+    /**
+     * Gets the width of the field, in tiles.
+     *
+     * @return the width in tiles.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height of the field, in tiles.
+     *
+     * @return the height in tiles.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the largest distance of any tile that can reach the exit. This is
+     * useful for scaling progress bars.
+     *
+     * @return the largest distance.
+     */
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    /**
+     * Gets the distance from a tile to the exit.
+     *
+     * @param x the tile's X-coordinate
+     * @param y the tile's Y-coordinate
+     * @return the number of steps to the exit, or {@link #UNREACHABLE}.
+     */
+    public int getDistance(int x, int y) {
+        if (x < 0 || width <= x || y < 0 || height <= y) {
+            return UNREACHABLE;
+        }
+
+        int tile = y * width + x;
+        if (shortDistances != null) {
+            char d = shortDistances[tile];
+            return d == CHAR_UNREACHABLE ? UNREACHABLE : d;
+        }
+        return distances[tile];
+    }
+
+    /**
+     * Gets the distance to the exit from the tile containing a point, such as
+     * an entity's position.
+     *
+     * @param x the X position, in tiles
+     * @param y the Y position, in tiles
+     * @return the number of steps to the exit, or {@link #UNREACHABLE}.
+     */
+    public int getDistance(float x, float y) {
+        return getDistance((int) Math.floor(x), (int) Math.floor(y));
+    }
+}
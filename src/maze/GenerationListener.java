@@ -0,0 +1,18 @@
+package maze;
+
+/**
+ * Receives the statistics for each maze generation. Register one on a single
+ * maze with {@link MazeGenerator#addGenerationListener(GenerationListener)},
+ * or on every maze with
+ * {@link MazeGenerator#addGlobalGenerationListener(GenerationListener)}.
+ */
+public interface GenerationListener {
+
+    /**
+     * Called on the generating thread after a maze is generated.
+     *
+     * @param maze the maze that was generated
+     * @param stats the statistics for the generation
+     */
+    void generated(MazeGenerator maze, GenerationStats stats);
+}
@@ -0,0 +1,161 @@
+package maze;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Collects generation statistics from every maze and publishes them over JMX
+ * as <code>maze:type=GenerationMetrics</code>. Call {@link #install()} once
+ * to start collecting; until then generation is not measured at all.
+ */
+public final class GenerationMetrics implements GenerationMetricsMBean, GenerationListener {
+
+    /**
+     * The JMX object name.
+     */
+    public static final String OBJECT_NAME = "maze:type=GenerationMetrics";
+
+    private static GenerationMetrics installed;
+
+    private long generationCount;
+    private long totalCells;
+    private long totalNanos;
+    private long lastNanos;
+    private long maxNanos;
+    private String lastAlgorithm;
+    private long lastBacktracks;
+    private long lastPeakDepth;
+    private long lastBytesAllocated = -1;
+
+    private GenerationMetrics() {
+    }
+
+    /**
+     * Starts collecting metrics from all mazes and registers the MBean with
+     * the platform MBean server. Calling this again returns the same
+     * instance.
+     *
+     * @return the installed metrics.
+     * @throws IllegalStateException if the MBean could not be registered.
+     */
+    public static synchronized GenerationMetrics install() {
+        if (installed == null) {
+            GenerationMetrics metrics = new GenerationMetrics();
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                server.registerMBean(metrics, new ObjectName(OBJECT_NAME));
+            } catch (JMException ex) {
+                throw new IllegalStateException("Could not register " + OBJECT_NAME, ex);
+            }
+            MazeGenerator.addGlobalGenerationListener(metrics);
+            installed = metrics;
+        }
+        return installed;
+    }
+
+    /**
+     * Stops collecting metrics and unregisters the MBean. This does nothing
+     * if the metrics are not installed.
+     */
+    public static synchronized void uninstall() {
+        if (installed == null) {
+            return;
+        }
+
+        MazeGenerator.removeGlobalGenerationListener(installed);
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+        } catch (JMException ex) {
+            // Already gone
+        }
+        installed = null;
+    }
+
+    @Override
+    public synchronized void generated(MazeGenerator maze, GenerationStats stats) {
+        generationCount++;
+        totalCells += stats.getCellCount();
+        totalNanos += stats.getNanos();
+        lastNanos = stats.getNanos();
+        maxNanos = Math.max(maxNanos, lastNanos);
+        lastAlgorithm = stats.getAlgorithm();
+        lastBacktracks = stats.getBacktracks();
+        lastPeakDepth = stats.getPeakDepth();
+        lastBytesAllocated = stats.getBytesAllocated();
+    }
+
+    @Override
+    public synchronized long getGenerationCount() {
+        return generationCount;
+    }
+
+    @Override
+    public synchronized long getTotalCells() {
+        return totalCells;
+    }
+
+    @Override
+    public synchronized double getTotalMillis() {
+        return totalNanos / 1e6;
+    }
+
+    @Override
+    public synchronized double getLastMillis() {
+        return lastNanos / 1e6;
+    }
+
+    @Override
+    public synchronized double getMaxMillis() {
+        return maxNanos / 1e6;
+    }
+
+    @Override
+    public synchronized double getCellsPerSecond() {
+        return totalNanos <= 0 ? 0.0 : totalCells * 1e9 / totalNanos;
+    }
+
+    @Override
+    public synchronized String getLastAlgorithm() {
+        return lastAlgorithm;
+    }
+
+    @Override
+    public synchronized long getLastBacktracks() {
+        return lastBacktracks;
+    }
+
+    @Override
+    public synchronized long getLastPeakDepth() {
+        return lastPeakDepth;
+    }
+
+    @Override
+    public synchronized long getLastBytesAllocated() {
+        return lastBytesAllocated;
+    }
+
+    @Override
+    public synchronized void reset() {
+        generationCount = 0;
+        totalCells = 0;
+        totalNanos = 0;
+        lastNanos = 0;
+        maxNanos = 0;
+        lastAlgorithm = null;
+        lastBacktracks = 0;
+        lastPeakDepth = 0;
+        lastBytesAllocated = -1;
+    }
+
+    /**
+     * Returns a string representation of this object.
+     *
+     * @return a string representation of this object.
+     */
+    @Override
+    public String toString() {
+        return "Maze generation metrics";
+    }
+}
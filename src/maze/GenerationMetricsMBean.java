@@ -0,0 +1,82 @@
+package maze;
+
+/**
+ * The management interface for {@link GenerationMetrics}.
+ */
+public interface GenerationMetricsMBean {
+
+    /**
+     * Gets the number of mazes generated.
+     *
+     * @return the number of generations.
+     */
+    long getGenerationCount();
+
+    /**
+     * Gets the total number of cells generated.
+     *
+     * @return the total cell count.
+     */
+    long getTotalCells();
+
+    /**
+     * Gets the total time spent generating, in milliseconds.
+     *
+     * @return the total time in milliseconds.
+     */
+    double getTotalMillis();
+
+    /**
+     * Gets the time taken by the last generation, in milliseconds.
+     *
+     * @return the last time in milliseconds.
+     */
+    double getLastMillis();
+
+    /**
+     * Gets the longest generation time, in milliseconds.
+     *
+     * @return the longest time in milliseconds.
+     */
+    double getMaxMillis();
+
+    /**
+     * Gets the overall generation rate.
+     *
+     * @return the cells generated per second over all generations.
+     */
+    double getCellsPerSecond();
+
+    /**
+     * Gets the algorithm used by the last generation.
+     *
+     * @return the last algorithm name, or <code>null</code> if none.
+     */
+    String getLastAlgorithm();
+
+    /**
+     * Gets the number of backtracks in the last generation.
+     *
+     * @return the last backtrack count.
+     */
+    long getLastBacktracks();
+
+    /**
+     * Gets the peak depth of the last generation.
+     *
+     * @return the last peak depth.
+     */
+    long getLastPeakDepth();
+
+    /**
+     * Gets the bytes allocated by the last generation.
+     *
+     * @return the last allocation in bytes, or -1 if unknown.
+     */
+    long getLastBytesAllocated();
+
+    /**
+     * Clears all the counters.
+     */
+    void reset();
+}
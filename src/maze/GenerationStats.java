@@ -0,0 +1,211 @@
+package maze;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * The statistics for one maze generation. What counts as a backtrack and as
+ * the peak depth depends on the algorithm:
+ * <ul>
+ * <li>the backtracker counts steps back along its trail and its longest
+ *     trail,</li>
+ * <li>Prim's algorithm reports its largest frontier,</li>
+ * <li>Wilson's algorithm counts the random walk steps erased by loops,</li>
+ * <li>the rest report zero for both.</li>
+ * </ul>
+ */
+public final class GenerationStats {
+
+    // The thread bean, if it can measure allocation
+    private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN = allocationBean();
+
+    private final String algorithm;
+    private final int width;
+    private final int height;
+    private final long cellsVisited;
+    private final long carves;
+    private final long backtracks;
+    private final long peakDepth;
+    private final long nanos;
+    private final long bytesAllocated;
+
+    /**
+     * Creates a new set of statistics.
+     *
+     * @param algorithm the algorithm name
+     * @param width the maze width, in cells
+     * @param height the maze height, in cells
+     * @param cellsVisited the number of cells visited
+     * @param carves the number of walls carved
+     * @param backtracks the number of steps undone or thrown away
+     * @param peakDepth the largest stack or frontier size
+     * @param nanos the elapsed time, in nanoseconds
+     * @param bytesAllocated the bytes allocated by the generating thread, or
+     * -1 if unknown
+     */
+    public GenerationStats(String algorithm, int width, int height,
+            long cellsVisited, long carves, long backtracks, long peakDepth,
+            long nanos, long bytesAllocated) {
+        this.algorithm = algorithm;
+        this.width = width;
+        this.height = height;
+        this.cellsVisited = cellsVisited;
+        this.carves = carves;
+        this.backtracks = backtracks;
+        this.peakDepth = peakDepth;
+        this.nanos = nanos;
+        this.bytesAllocated = bytesAllocated;
+    }
+
+    /**
+     * Finds the thread bean, if this JVM can measure per-thread allocation.
+     *
+     * @return the bean, or <code>null</code> if allocation can't be measured.
+     */
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+                if (sunBean.isThreadAllocatedMemorySupported()) {
+                    if (!sunBean.isThreadAllocatedMemoryEnabled()) {
+                        sunBean.setThreadAllocatedMemoryEnabled(true);
+                    }
+                    return sunBean;
+                }
+            }
+        } catch (LinkageError | RuntimeException ex) {
+            // Not available on this JVM
+        }
+        return null;
+    }
+
+    /**
+     * Gets the total bytes allocated so far by the current thread. Work done
+     * on other threads, such as by {@link TiledParallelGenerator}, is not
+     * included.
+     *
+     * @return the allocated bytes, or -1 if unknown.
+     */
+    static long currentThreadAllocatedBytes() {
+        if (ALLOCATION_BEAN == null) {
+            return -1;
+        }
+        return ALLOCATION_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Gets the algorithm name.
+     *
+     * @return the algorithm name.
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Gets the maze width, in cells.
+     *
+     * @return the maze width in cells.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the maze height, in cells.
+     *
+     * @return the maze height in cells.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the number of cells in the maze.
+     *
+     * @return the number of cells.
+     */
+    public long getCellCount() {
+        return (long) width * height;
+    }
+
+    /**
+     * Gets the number of cells visited.
+     *
+     * @return the number of cells visited.
+     */
+    public long getCellsVisited() {
+        return cellsVisited;
+    }
+
+    /**
+     * Gets the number of walls carved.
+     *
+     * @return the number of walls carved.
+     */
+    public long getCarves() {
+        return carves;
+    }
+
+    /**
+     * Gets the number of steps that were undone or thrown away.
+     *
+     * @return the number of backtracks.
+     */
+    public long getBacktracks() {
+        return backtracks;
+    }
+
+    /**
+     * Gets the largest stack or frontier size reached.
+     *
+     * @return the peak depth.
+     */
+    public long getPeakDepth() {
+        return peakDepth;
+    }
+
+    /**
+     * Gets the time taken, in nanoseconds.
+     *
+     * @return the elapsed time in nanoseconds.
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Gets the bytes allocated by the generating thread.
+     *
+     * @return the allocated bytes, or -1 if unknown.
+     */
+    public long getBytesAllocated() {
+        return bytesAllocated;
+    }
+
+    /**
+     * Gets the generation rate.
+     *
+     * @return the number of cells generated per second.
+     */
+    public double getCellsPerSecond() {
+        return nanos <= 0 ? 0.0 : getCellCount() * 1e9 / nanos;
+    }
+
+    /**
+     * Returns a string representation of this object.
+     *
+     * @return a string representation of this object.
+     */
+    @Override
+    public String toString() {
+        return algorithm + " " + width + "x" + height
+                + ": " + (nanos / 1000) + " us"
+                + ", " + cellsVisited + " visited"
+                + ", " + carves + " carves"
+                + ", " + backtracks + " backtracks"
+                + ", peak depth " + peakDepth
+                + (bytesAllocated >= 0 ? ", " + bytesAllocated + " bytes" : "");
+    }
+}
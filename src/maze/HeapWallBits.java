@@ -0,0 +1,71 @@
+package maze;
+
+import java.util.Arrays;
+
+/**
+ * Wall bits stored in a <code>long[]</code> on the heap. This is limited to
+ * about 2<sup>37</sup> walls.
+ */
+final class HeapWallBits extends WallBits {
+
+    private final long[] words;
+
+    /**
+     * Creates a new wall set with all walls absent.
+     *
+     * @param size the number of walls
+     * @throws IllegalArgumentException if the size is negative or too large
+     * to be stored in a single array.
+     */
+    HeapWallBits(long size) {
+        super(size);
+
+        if (wordCount(size) > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many walls for the heap: " + size);
+        }
+        words = new long[(int) wordCount(size)];
+    }
+
+    @Override
+    public boolean get(long index) {
+        return (words[(int) (index >>> 6)] & (1L << index)) != 0;
+    }
+
+    @Override
+    public boolean clear(long index) {
+        int w = (int) (index >>> 6);
+        long mask = 1L << index;
+        long word = words[w];
+        words[w] = word & ~mask;
+        return (word & mask) != 0;
+    }
+
+    @Override
+    public boolean set(long index) {
+        int w = (int) (index >>> 6);
+        long mask = 1L << index;
+        long word = words[w];
+        words[w] = word | mask;
+        return (word & mask) != 0;
+    }
+
+    @Override
+    public void fill() {
+        Arrays.fill(words, -1L);
+
+        int tail = (int) (size() & 63);
+        if (tail != 0) {
+            words[words.length - 1] = (1L << tail) - 1;
+        }
+    }
+
+    @Override
+    long word(long wordIndex) {
+        return words[(int) wordIndex];
+    }
+
+    @Override
+    void setWord(long wordIndex, long value) {
+        words[(int) wordIndex] = value;
+    }
+}
@@ -0,0 +1,149 @@
+package maze;
+
+import java.util.SplittableRandom;
+
+/**
+ * Implements a maze generator that uses randomized Kruskal's algorithm. Every
+ * interior wall is visited once in random order, and a wall is removed if the
+ * cells on either side are not yet connected. Connectivity is tracked with a
+ * union-find forest in a single <code>int[]</code>, using union by size and
+ * path halving.
+ * <p>
+ * This produces a maze with many short dead ends and a fairly direct
+ * solution.</p>
+ * <p>
+ * Time is O(n &alpha;(n)) for n cells. Memory is an <code>int</code> per
+ * interior wall for the shuffled order plus an <code>int</code> per cell for
+ * the forest, about 12 bytes per cell, which limits the maze to under
+ * 2<sup>31</sup> walls.</p>
+ *
+ * @see <a href="http://www.astrolog.org/labyrnth/algrithm.htm">Think Labyrinth:
+ * Maze Algorithms</a>
+ */
+public class KruskalGenerator extends MazeGenerator {
+
+    /**
+     * Creates a new Kruskal's algorithm maze generator.
+     *
+     * @param width the maze width
+     * @param height the maze height
+     */
+    public KruskalGenerator(int width, int height) {
+        super(width, height);
+    }
+
+    /**
+     * Generate the maze.
+     */
+    @Override
+    protected void generateMaze() {
+        int width = getWidth();
+        int height = getHeight();
+        SplittableRandom rand = getRandom();
+
+        // Interior vertical walls come first, then interior horizontal ones
+        long vertCount = (long) (width - 1) * height;
+        long edgeCount = vertCount + (long) width * (height - 1);
+        if (edgeCount > Integer.MAX_VALUE - 8 || (long) width * height > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Too many walls: " + edgeCount);
+        }
+
+        int[] edges = new int[(int) edgeCount];
+        for (int i = 0; i < edges.length; i++) {
+            edges[i] = i;
+        }
+
+        // Negative entries are roots holding the set size
+        int cellCount = width * height;
+        int[] forest = new int[cellCount];
+        for (int i = 0; i < cellCount; i++) {
+            forest[i] = -1;
+        }
+
+        // Shuffle as we go, stopping once everything is connected
+        int joined = 1;
+        for (int i = edges.length - 1; i >= 0 && joined < cellCount; i--) {
+            int j = rand.nextInt(i + 1);
+            int edge = edges[j];
+            edges[j] = edges[i];
+
+            int x;
+            int y;
+            int direction;
+            int other;
+            if (edge < vertCount) {
+                y = edge / (width - 1);
+                x = edge % (width - 1);
+                direction = RIGHT;
+                other = y * width + x + 1;
+            } else {
+                edge -= vertCount;
+                y = edge / width;
+                x = edge % width;
+                direction = DOWN;
+                other = (y + 1) * width + x;
+            }
+
+            if (union(forest, y * width + x, other)) {
+                carveUnchecked(x, y, direction);
+                joined++;
+            }
+        }
+
+        recordWalk(cellCount, joined - 1, 0, 0);
+    }
+
+    /**
+     * Finds the root of a cell's set, halving the path as it goes.
+     *
+     * @param forest the union-find forest
+     * @param cell the cell index
+     * @return the root cell index.
+     */
+    private static int find(int[] forest, int cell) {
+        while (forest[cell] >= 0) {
+            int parent = forest[cell];
+            if (forest[parent] >= 0) {
+                forest[cell] = forest[parent];
+            }
+            cell = parent;
+        }
+        return cell;
+    }
+
+    /**
+     * Joins the sets containing two cells.
+     *
+     * @param forest the union-find forest
+     * @param a the first cell index
+     * @param b the second cell index
+     * @return whether the cells were in different sets.
+     */
+    private static boolean union(int[] forest, int a, int b) {
+        a = find(forest, a);
+        b = find(forest, b);
+        if (a == b) {
+            return false;
+        }
+
+        // Hang the smaller tree under the larger
+        if (forest[a] > forest[b]) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        forest[a] += forest[b];
+        forest[b] = a;
+        return true;
+    }
+
+    /**
+     * Returns a string representation of this object.
+     *
+     * @return a string representation of this object.
+     */
+    @Override
+    public String toString() {
+        return "Kruskal's algorithm maze generator";
+    }
+}
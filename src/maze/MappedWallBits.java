@@ -0,0 +1,106 @@
+package maze;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Wall bits stored in a memory-mapped region of a file. The region is split
+ * into 1 GiB segments because a single buffer can only address 2 GiB, so the
+ * total size is limited only by the address space and the file system. Pages
+ * are read from disk on demand and written back by the operating system.
+ * <p>
+ * Words are stored little-endian.</p>
+ */
+final class MappedWallBits extends WallBits {
+
+    // Words per segment, as a shift: 2^27 words = 1 GiB
+    private static final int SEGMENT_SHIFT = 27;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * Maps a region of a file. The file must already be large enough to hold
+     * the region.
+     *
+     * @param channel the file channel
+     * @param mode the mapping mode
+     * @param offset the byte offset of the first word in the file
+     * @param size the number of walls
+     * @throws IOException if the region could not be mapped.
+     */
+    MappedWallBits(FileChannel channel, FileChannel.MapMode mode,
+            long offset, long size) throws IOException {
+        super(size);
+
+        long words = wordCount(size);
+        int count = (int) ((words + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        segments = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long first = (long) i << SEGMENT_SHIFT;
+            long n = Math.min(words - first, 1L << SEGMENT_SHIFT);
+            segments[i] = channel.map(mode, offset + (first << 3), n << 3);
+            segments[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * Returns the number of bytes a region of the given size occupies.
+     *
+     * @param size the number of walls
+     * @return the number of bytes.
+     */
+    static long byteCount(long size) {
+        return wordCount(size) << 3;
+    }
+
+    @Override
+    public void flush() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public boolean get(long index) {
+        return (word(index >>> 6) & (1L << index)) != 0;
+    }
+
+    @Override
+    public boolean clear(long index) {
+        long w = index >>> 6;
+        long mask = 1L << index;
+        long word = word(w);
+        if ((word & mask) == 0) {
+            return false;
+        }
+        setWord(w, word & ~mask);
+        return true;
+    }
+
+    @Override
+    public boolean set(long index) {
+        long w = index >>> 6;
+        long mask = 1L << index;
+        long word = word(w);
+        if ((word & mask) != 0) {
+            return true;
+        }
+        setWord(w, word | mask);
+        return false;
+    }
+
+    @Override
+    long word(long wordIndex) {
+        return segments[(int) (wordIndex >>> SEGMENT_SHIFT)]
+                .getLong((int) (wordIndex & SEGMENT_MASK) << 3);
+    }
+
+    @Override
+    void setWord(long wordIndex, long value) {
+        segments[(int) (wordIndex >>> SEGMENT_SHIFT)]
+                .putLong((int) (wordIndex & SEGMENT_MASK) << 3, value);
+    }
+}
@@ -0,0 +1,217 @@
+package maze;
+
+/**
+ * The result of analysing a maze with {@link MazeAnalyzer}. Only passages
+ * between cells inside the maze count; openings in the outer border are
+ * ignored.
+ * <p>
+ * A cell with exactly one passage is a dead end, and a cell with three or
+ * more is a junction. A corridor is a chain of cells with exactly two
+ * passages, between two cells that have some other number. Its length is the
+ * number of steps from one end to the other, so two neighbouring junctions
+ * are joined by a corridor of length 1.</p>
+ */
+public final class MazeAnalysis {
+
+    private final int width;
+    private final int height;
+    private final long solutionLength;
+    private final long deadEnds;
+    private final long junctions;
+    private final long junctionBranches;
+    private final long passages;
+    private final long[] corridorLengths;
+    private final long diameter;
+    private final boolean connected;
+
+    /**
+     * Creates a new analysis result.
+     *
+     * @param width the maze width, in cells
+     * @param height the maze height, in cells
+     * @param solutionLength the number of steps from the entrance to the exit,
+     * or -1 if there is no path
+     * @param deadEnds the number of dead ends
+     * @param junctions the number of junctions
+     * @param junctionBranches the total number of passages out of junctions
+     * @param passages the number of passages between cells
+     * @param corridorLengths the corridor count for each length; this array is
+     * not copied
+     * @param diameter the longest shortest path found
+     * @param connected whether every cell can reach every other cell
+     */
+    MazeAnalysis(int width, int height, long solutionLength,
+            long deadEnds, long junctions, long junctionBranches, long passages,
+            long[] corridorLengths, long diameter, boolean connected) {
+        this.width = width;
+        this.height = height;
+        this.solutionLength = solutionLength;
+        this.deadEnds = deadEnds;
+        this.junctions = junctions;
+        this.junctionBranches = junctionBranches;
+        this.passages = passages;
+        this.corridorLengths = corridorLengths;
+        this.diameter = diameter;
+        this.connected = connected;
+    }
+
+    /**
+     * Gets the maze width, in cells.
+     *
+     * @return the maze width in cells.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the maze height, in cells.
+     *
+     * @return the maze height in cells.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the number of cells in the maze.
+     *
+     * @return the number of cells.
+     */
+    public long getCellCount() {
+        return (long) width * height;
+    }
+
+    /**
+     * Gets the length of the shortest path from the entrance to the exit.
+     *
+     * @return the number of steps, or -1 if the exit can't be reached.
+     */
+    public long getSolutionLength() {
+        return solutionLength;
+    }
+
+    /**
+     * Gets the number of dead ends.
+     *
+     * @return the number of cells with one passage.
+     */
+    public long getDeadEndCount() {
+        return deadEnds;
+    }
+
+    /**
+     * Gets the number of junctions.
+     *
+     * @return the number of cells with three or more passages.
+     */
+    public long getJunctionCount() {
+        return junctions;
+    }
+
+    /**
+     * Gets the branching factor: the average number of ways on from a
+     * junction, not counting the way in.
+     *
+     * @return the branching factor, or 0 if there are no junctions.
+     */
+    public double getBranchingFactor() {
+        return junctions == 0 ? 0.0 : (double) (junctionBranches - junctions) / junctions;
+    }
+
+    /**
+     * Gets the number of passages between cells, which is the number of edges
+     * in the maze's graph.
+     *
+     * @return the number of passages.
+     */
+    public long getPassageCount() {
+        return passages;
+    }
+
+    /**
+     * Gets the corridor length distribution. Element <code>n</code> is the
+     * number of corridors of length <code>n</code>; element 0 is always 0.
+     *
+     * @return a copy of the distribution.
+     */
+    public long[] getCorridorLengths() {
+        return corridorLengths.clone();
+    }
+
+    /**
+     * Gets the number of corridors.
+     *
+     * @return the number of corridors.
+     */
+    public long getCorridorCount() {
+        long count = 0;
+        for (long n : corridorLengths) {
+            count += n;
+        }
+        return count;
+    }
+
+    /**
+     * Gets the mean corridor length.
+     *
+     * @return the mean length, or 0 if there are no corridors.
+     */
+    public double getMeanCorridorLength() {
+        long count = 0;
+        long total = 0;
+        for (int len = 0; len < corridorLengths.length; len++) {
+            count += corridorLengths[len];
+            total += corridorLengths[len] * len;
+        }
+        return count == 0 ? 0.0 : (double) total / count;
+    }
+
+    /**
+     * Gets the diameter: the length of the longest shortest path between any
+     * two cells. This is exact for perfect mazes. For other mazes it is found
+     * the same way and is a lower bound.
+     *
+     * @return the diameter, in steps.
+     */
+    public long getDiameter() {
+        return diameter;
+    }
+
+    /**
+     * Checks if every cell can be reached from every other cell.
+     *
+     * @return whether the maze is connected.
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Checks if the maze is perfect, that is, if there is exactly one path
+     * between any two cells. This is true when the maze is connected and has
+     * one less passage than cells.
+     *
+     * @return whether the maze is perfect.
+     */
+    public boolean isPerfect() {
+        return connected && passages == getCellCount() - 1;
+    }
+
+    /**
+     * Returns a string representation of this object.
+     *
+     * @return a string representation of this object.
+     */
+    @Override
+    public String toString() {
+        return width + "x" + height
+                + ": solution " + solutionLength
+                + ", diameter " + diameter
+                + ", " + deadEnds + " dead ends"
+                + ", " + junctions + " junctions"
+                + String.format(", branching %.3f", getBranchingFactor())
+                + String.format(", mean corridor %.3f", getMeanCorridorLength())
+                + (isPerfect() ? ", perfect" : connected ? ", has loops" : ", disconnected");
+    }
+}
@@ -0,0 +1,492 @@
+package maze;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Measures the shape of a maze: the solution length, dead ends, junctions,
+ * corridor lengths and diameter, and whether the maze is perfect. See
+ * {@link MazeAnalysis} for what each one means.
+ * <p>
+ * The analysis first reads the walls a row at a time, in parallel blocks of
+ * rows, into one byte of passages per cell, counting dead ends and junctions
+ * as it goes. The corridors are then followed in parallel while two
+ * breadth-first searches find the paths: one from the entrance, which also
+ * finds the exit and the farthest cell, and one from that cell, which finds
+ * the diameter. The searches mark visited cells in the spare bits of the
+ * passage bytes and queue cell indexes in a growable ring buffer, so the
+ * whole analysis needs a little over one byte per cell. Many mazes can be
+ * analysed at once with {@link #analyzeAll(List)}.</p>
+ * <p>
+ * Cells are indexed with <code>int</code>s, so a maze can have at most about
+ * 2<sup>31</sup> cells.</p>
+ */
+public class MazeAnalyzer {
+
+    // The smallest number of cells worth giving their own task
+    private static final int MIN_TASK_CELLS = 1 << 16;
+
+    private static final int MAX_CELLS = Integer.MAX_VALUE - 8;
+
+    // The bits of a cell's byte in the passage array. The searches mark the
+    // cells they visit in the same byte.
+    private static final int PASSAGES = 0xf;
+    private static final int FIRST_VISIT = 0x10;
+    private static final int SECOND_VISIT = 0x20;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a new analyzer that runs on the common pool.
+     */
+    public MazeAnalyzer() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new analyzer.
+     *
+     * @param pool the pool that runs the analysis
+     */
+    public MazeAnalyzer(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Analyses a maze whose entrance is the top-left cell and whose exit is
+     * the bottom-right cell, as in the game.
+     *
+     * @param maze the maze to analyse
+     * @return the analysis.
+     * @throws IllegalArgumentException if the maze has too many cells.
+     */
+    public MazeAnalysis analyze(MazeView maze) {
+        return analyze(maze, 0, 0, maze.getWidth() - 1, maze.getHeight() - 1);
+    }
+
+    /**
+     * Analyses a maze.
+     *
+     * @param maze the maze to analyse
+     * @param entranceX the entrance cell's X-coordinate
+     * @param entranceY the entrance cell's Y-coordinate
+     * @param exitX the exit cell's X-coordinate
+     * @param exitY the exit cell's Y-coordinate
+     * @return the analysis.
+     * @throws IllegalArgumentException if the maze has too many cells.
+     * @throws IndexOutOfBoundsException if the entrance or exit is outside the
+     * maze.
+     */
+    public MazeAnalysis analyze(MazeView maze, int entranceX, int entranceY, int exitX, int exitY) {
+        return pool.invoke(new AnalyzeTask(maze, entranceX, entranceY, exitX, exitY));
+    }
+
+    /**
+     * Analyses many mazes in parallel, each from its top-left to its
+     * bottom-right cell.
+     *
+     * @param mazes the mazes to analyse
+     * @return the analyses, in the same order as the mazes.
+     * @throws IllegalArgumentException if any maze has too many cells.
+     */
+    public List<MazeAnalysis> analyzeAll(List<? extends MazeView> mazes) {
+        List<AnalyzeTask> tasks = new ArrayList<>(mazes.size());
+        for (MazeView maze : mazes) {
+            tasks.add(new AnalyzeTask(maze, 0, 0, maze.getWidth() - 1, maze.getHeight() - 1));
+        }
+
+        // Started through the pool, so they run on its threads rather than
+        // the common pool's
+        for (AnalyzeTask task : tasks) {
+            pool.execute(task);
+        }
+
+        List<MazeAnalysis> results = new ArrayList<>(tasks.size());
+        for (AnalyzeTask task : tasks) {
+            results.add(task.join());
+        }
+        return results;
+    }
+
+    /**
+     * Gets the change in cell index for a step in each direction.
+     *
+     * @param width the maze width
+     * @return the offsets, indexed by direction.
+     */
+    static int[] offsets(int width) {
+        int[] offsets = new int[4];
+        offsets[MazeGenerator.UP] = -width;
+        offsets[MazeGenerator.RIGHT] = 1;
+        offsets[MazeGenerator.DOWN] = width;
+        offsets[MazeGenerator.LEFT] = -1;
+        return offsets;
+    }
+
+    /**
+     * Turns a wall mask into a passage mask, ignoring the outer border.
+     *
+     * @param wallMask the cell's wall mask
+     * @param x the cell's X-coordinate
+     * @param y the cell's Y-coordinate
+     * @param width the maze width
+     * @param height the maze height
+     * @return the passage mask.
+     */
+    static int passages(int wallMask, int x, int y, int width, int height) {
+        int open = ~wallMask & 0xf;
+        if (y == 0) {
+            open &= ~MazeView.WALL_UP;
+        }
+        if (x == width - 1) {
+            open &= ~MazeView.WALL_RIGHT;
+        }
+        if (y == height - 1) {
+            open &= ~MazeView.WALL_DOWN;
+        }
+        if (x == 0) {
+            open &= ~MazeView.WALL_LEFT;
+        }
+        return open;
+    }
+
+    /**
+     * Analyses one maze. The corridors are followed in other tasks while the
+     * current thread runs the searches.
+     */
+    private static final class AnalyzeTask extends RecursiveTask<MazeAnalysis> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final MazeView maze;
+        private final int entrance;
+        private final int exit;
+
+        AnalyzeTask(MazeView maze, int entranceX, int entranceY, int exitX, int exitY) {
+            int width = maze.getWidth();
+            int height = maze.getHeight();
+            if ((long) width * height > MAX_CELLS) {
+                throw new IllegalArgumentException("Too many cells: " + width + " " + height);
+            }
+            if (entranceX < 0 || width <= entranceX || entranceY < 0 || height <= entranceY) {
+                throw new IndexOutOfBoundsException("Entrance out of range: " + entranceX + " " + entranceY);
+            }
+            if (exitX < 0 || width <= exitX || exitY < 0 || height <= exitY) {
+                throw new IndexOutOfBoundsException("Exit out of range: " + exitX + " " + exitY);
+            }
+
+            this.maze = maze;
+            this.entrance = entranceY * width + entranceX;
+            this.exit = exitY * width + exitX;
+        }
+
+        @Override
+        protected MazeAnalysis compute() {
+            int width = maze.getWidth();
+            int height = maze.getHeight();
+            byte[] open = new byte[width * height];
+            RowStats stats = new RowTask(maze, open, false, 0, height).invoke();
+
+            // Follow the corridors while this thread searches
+            RowTask corridors = new RowTask(maze, open, true, 0, height);
+            corridors.fork();
+
+            Search search = new Search(open, width);
+            search.run(entrance, exit, FIRST_VISIT);
+            long solution = search.targetDistance;
+            boolean connected = search.visitedCount == open.length;
+            search.run(search.farthest, -1, SECOND_VISIT);
+            long diameter = search.farthestDistance;
+
+            stats.add(corridors.join());
+            return new MazeAnalysis(width, height, solution,
+                    stats.deadEnds, stats.junctions, stats.junctionBranches, stats.passages,
+                    Arrays.copyOf(stats.corridors, stats.maxCorridor + 1),
+                    diameter, connected);
+        }
+    }
+
+    /**
+     * Works on a block of rows, splitting it in half until the blocks are
+     * small. The first pass reads the walls into the passage array and counts
+     * cells and passages; the second follows the corridors.
+     */
+    private static final class RowTask extends RecursiveTask<RowStats> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final MazeView maze;
+        private final byte[] open;
+        private final boolean corridors;
+        private final int y0;
+        private final int y1;
+
+        RowTask(MazeView maze, byte[] open, boolean corridors, int y0, int y1) {
+            this.maze = maze;
+            this.open = open;
+            this.corridors = corridors;
+            this.y0 = y0;
+            this.y1 = y1;
+        }
+
+        @Override
+        protected RowStats compute() {
+            if ((long) (y1 - y0) * maze.getWidth() > MIN_TASK_CELLS && y1 - y0 > 1) {
+                int mid = (y0 + y1) >>> 1;
+                RowTask top = new RowTask(maze, open, corridors, y0, mid);
+                RowTask bottom = new RowTask(maze, open, corridors, mid, y1);
+                top.fork();
+                RowStats stats = bottom.compute();
+                stats.add(top.join());
+                return stats;
+            }
+
+            RowStats stats = new RowStats();
+            if (corridors) {
+                walkCorridors(stats);
+            } else {
+                readPassages(stats);
+            }
+            return stats;
+        }
+
+        /**
+         * Fills in the passages for this block and counts them.
+         *
+         * @param stats the stats to count into
+         */
+        private void readPassages(RowStats stats) {
+            int width = maze.getWidth();
+            int height = maze.getHeight();
+            byte[] masks = new byte[width];
+            for (int y = y0; y < y1; y++) {
+                maze.getRowMasks(y, masks);
+                int row = y * width;
+                for (int x = 0; x < width; x++) {
+                    int passages = passages(masks[x], x, y, width, height);
+                    open[row + x] = (byte) passages;
+
+                    // Count each passage once, from its upper or left cell
+                    if ((passages & MazeView.WALL_RIGHT) != 0) {
+                        stats.passages++;
+                    }
+                    if ((passages & MazeView.WALL_DOWN) != 0) {
+                        stats.passages++;
+                    }
+
+                    int degree = Integer.bitCount(passages);
+                    if (degree == 1) {
+                        stats.deadEnds++;
+                    } else if (degree > 2) {
+                        stats.junctions++;
+                        stats.junctionBranches += degree;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Follows every corridor that leaves a cell in this block, other than
+         * the cells that are part of a corridor.
+         *
+         * @param stats the stats to record into
+         */
+        private void walkCorridors(RowStats stats) {
+            int width = maze.getWidth();
+            int[] offsets = offsets(width);
+            int end = y1 * width;
+            for (int cell = y0 * width; cell < end; cell++) {
+                int passages = open[cell] & PASSAGES;
+                if (Integer.bitCount(passages) == 2) {
+                    continue;
+                }
+                while (passages != 0) {
+                    int d = Integer.numberOfTrailingZeros(passages);
+                    passages &= passages - 1;
+                    walkCorridor(stats, cell, d, offsets);
+                }
+            }
+        }
+
+        /**
+         * Follows a corridor from a cell that isn't part of one, and records
+         * its length. Every corridor is followed from both ends, so it is only
+         * recorded from the end with the lower index, or for a loop back to
+         * the same cell, the lower direction.
+         *
+         * @param stats the stats to record into
+         * @param start the starting cell index
+         * @param startDirection the direction to leave in
+         * @param offsets the index offset of each direction
+         */
+        private void walkCorridor(RowStats stats, int start, int startDirection, int[] offsets) {
+            int cell = start;
+            int direction = startDirection;
+            long length = 0;
+            while (true) {
+                cell += offsets[direction];
+                length++;
+
+                // Leave by the passage we didn't come in through
+                int passages = open[cell] & PASSAGES;
+                if (Integer.bitCount(passages) != 2) {
+                    break;
+                }
+                direction = Integer.numberOfTrailingZeros(passages & ~(1 << ((direction + 2) & 3)));
+            }
+
+            int endDirection = (direction + 2) & 3;
+            if (start < cell || (start == cell && startDirection < endDirection)) {
+                stats.addCorridor(length);
+            }
+        }
+    }
+
+    /**
+     * The counts for a block of rows.
+     */
+    private static final class RowStats {
+
+        long deadEnds;
+        long junctions;
+        long junctionBranches;
+        long passages;
+        long[] corridors = new long[16];
+        int maxCorridor;
+
+        /**
+         * Records one corridor.
+         *
+         * @param length the corridor length
+         */
+        void addCorridor(long length) {
+            if (length >= corridors.length) {
+                corridors = Arrays.copyOf(corridors,
+                        (int) Math.max(length + 1, (long) corridors.length * 2));
+            }
+            corridors[(int) length]++;
+            maxCorridor = (int) Math.max(maxCorridor, length);
+        }
+
+        /**
+         * Adds another block's counts to these.
+         *
+         * @param other the other block's counts
+         */
+        void add(RowStats other) {
+            deadEnds += other.deadEnds;
+            junctions += other.junctions;
+            junctionBranches += other.junctionBranches;
+            passages += other.passages;
+            if (other.maxCorridor >= corridors.length) {
+                corridors = Arrays.copyOf(corridors, other.maxCorridor + 1);
+            }
+            for (int len = 0; len <= other.maxCorridor; len++) {
+                corridors[len] += other.corridors[len];
+            }
+            maxCorridor = Math.max(maxCorridor, other.maxCorridor);
+        }
+    }
+
+    /**
+     * A breadth-first search over the cells. The queue is kept between runs.
+     */
+    private static final class Search {
+
+        private final byte[] open;
+        private final int[] offsets;
+        private int[] queue = new int[1024];
+
+        // Results of the last run
+        long targetDistance;
+        int farthest;
+        long farthestDistance;
+        long visitedCount;
+
+        Search(byte[] open, int width) {
+            this.open = open;
+            this.offsets = offsets(width);
+        }
+
+        /**
+         * Searches from one cell until every reachable cell is visited. The
+         * cells are marked as visited in the passage array itself, using a
+         * bit above the passages, so that each step reads a single byte. Each
+         * run must use a different bit.
+         *
+         * @param start the starting cell index
+         * @param target the cell index to find the distance to, or -1
+         * @param visitedBit the bit that marks visited cells
+         */
+        void run(int start, int target, int visitedBit) {
+            targetDistance = -1;
+            visitedCount = 0;
+
+            // The queue is a ring buffer whose size is a power of two
+            int head = 0;
+            int tail = 0;
+            int mask = queue.length - 1;
+            long distance = 0;
+            int levelEnd = 1;  // Number of cells dequeued when this level ends
+            int dequeued = 0;
+
+            open[start] |= visitedBit;
+            queue[tail++ & mask] = start;
+            int cell = start;
+            while (head != tail) {
+                cell = queue[head++ & mask];
+                visitedCount++;
+                if (cell == target) {
+                    targetDistance = distance;
+                }
+
+                int passages = open[cell] & PASSAGES;
+                while (passages != 0) {
+                    int next = cell + offsets[Integer.numberOfTrailingZeros(passages)];
+                    passages &= passages - 1;
+                    if ((open[next] & visitedBit) != 0) {
+                        continue;
+                    }
+                    open[next] |= visitedBit;
+
+                    if (tail - head == queue.length) {
+                        // Grow, unrolling the ring so that it starts at 0
+                        int[] grown = new int[queue.length * 2];
+                        for (int i = 0; i < queue.length; i++) {
+                            grown[i] = queue[(head + i) & mask];
+                        }
+                        levelEnd -= dequeued;
+                        dequeued = 0;
+                        tail -= head;
+                        head = 0;
+                        queue = grown;
+                        mask = queue.length - 1;
+                    }
+                    queue[tail++ & mask] = next;
+                }
+
+                // Move on a level once every cell at this distance is done
+                if (++dequeued == levelEnd && head != tail) {
+                    distance++;
+                    levelEnd = dequeued + (tail - head);
+                }
+            }
+
+            farthest = cell;
+            farthestDistance = distance;
+        }
+    }
+
+    /**
+     * Returns a string representation of this object.
+     *
+     * @return a string representation of this object.
+     */
+    @Override
+    public String toString() {
+        return "Maze analyzer";
+    }
+}
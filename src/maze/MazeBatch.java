@@ -0,0 +1,203 @@
+package maze;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Generates many mazes concurrently on a fixed pool of worker threads.
+ * Finished mazes are handed over through a bounded queue: when the consumer
+ * falls behind, the workers wait instead of piling up finished mazes.
+ * <p>
+ * Workers keep their generation scratch space (such as the Recursive
+ * Backtracker's visited flags and path stack) between mazes, so a worker that
+ * generates many mazes of similar size allocates little besides the mazes
+ * themselves.</p>
+ */
+public class MazeBatch implements AutoCloseable {
+
+    /**
+     * One generated maze and the spec it came from.
+     */
+    public static final class Result {
+
+        private final MazeSpec spec;
+        private final MazeGenerator maze;
+        private final Throwable error;
+
+        Result(MazeSpec spec, MazeGenerator maze, Throwable error) {
+            this.spec = spec;
+            this.maze = maze;
+            this.error = error;
+        }
+
+        /**
+         * Gets the spec the maze was generated from.
+         *
+         * @return the spec.
+         */
+        public MazeSpec getSpec() {
+            return spec;
+        }
+
+        /**
+         * Gets the generated maze.
+         *
+         * @return the maze, which now belongs to the caller.
+         */
+        public MazeGenerator getMaze() {
+            return maze;
+        }
+    }
+
+    // How long a worker waits on a full queue before checking that someone
+    // is still reading the results
+    private static final long PUT_WAIT_MILLIS = 1000;
+
+    private final ExecutorService workers;
+    private final int queueCapacity;
+
+    /**
+     * Creates a batch generator with one worker per processor.
+     */
+    public MazeBatch() {
+        this(Runtime.getRuntime().availableProcessors(), 64);
+    }
+
+    /**
+     * Creates a batch generator.
+     *
+     * @param threads the number of worker threads
+     * @param queueCapacity the number of finished mazes that may wait for the
+     * consumer before workers stop
+     * @throws IllegalArgumentException if either value is non-positive.
+     */
+    public MazeBatch(int threads, int queueCapacity) {
+        if (threads <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Bad batch size: " + threads + " " + queueCapacity);
+        }
+
+        this.queueCapacity = queueCapacity;
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "maze-batch");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Generates the given mazes. The returned stream delivers each maze as
+     * soon as it is done, so the order is not that of the specs. Closing the
+     * stream early cancels the mazes that haven't been delivered, as does a
+     * maze that fails. A stream that is dropped without being closed is
+     * noticed once it has been garbage collected, and its workers give up.
+     *
+     * @param specs the mazes to generate
+     * @return a stream of the generated mazes.
+     * @throws RuntimeException from the stream, if a maze could not be
+     * generated.
+     */
+    public Stream<Result> generate(List<MazeSpec> specs) {
+        BlockingQueue<Result> done = new ArrayBlockingQueue<>(queueCapacity);
+        List<Future<?>> futures = new ArrayList<>(specs.size());
+
+        Spliterator<Result> results = new Spliterators.AbstractSpliterator<Result>(
+                specs.size(), Spliterator.NONNULL) {
+            private int remaining = specs.size();
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Result> action) {
+                if (remaining == 0) {
+                    return false;
+                }
+
+                Result result;
+                try {
+                    result = done.take();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    cancel(futures);
+                    remaining = 0;
+                    throw new IllegalStateException("Interrupted", ex);
+                }
+                remaining--;
+
+                if (result.error != null) {
+                    cancel(futures);
+                    remaining = 0;
+                    if (result.error instanceof RuntimeException) {
+                        throw (RuntimeException) result.error;
+                    }
+                    if (result.error instanceof Error) {
+                        throw (Error) result.error;
+                    }
+                    throw new IllegalStateException(result.error);
+                }
+                action.accept(result);
+                return true;
+            }
+        };
+
+        // The workers must not keep the reader alive, or an abandoned stream
+        // could never be noticed
+        WeakReference<Spliterator<Result>> reader = new WeakReference<>(results);
+        AtomicBoolean abandoned = new AtomicBoolean();
+        for (MazeSpec spec : specs) {
+            futures.add(workers.submit(() -> {
+                if (abandoned.get()) {
+                    return;
+                }
+
+                // Every spec puts exactly one result on the queue
+                Result result;
+                try {
+                    result = new Result(spec, spec.generate(), null);
+                } catch (Throwable ex) {
+                    result = new Result(spec, null, ex);
+                }
+                try {
+                    while (!done.offer(result, PUT_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                        if (abandoned.get() || reader.get() == null) {
+                            abandoned.set(true);  // Nobody is reading any more
+                            return;
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    // Cancelled
+                }
+            }));
+        }
+        return StreamSupport.stream(results, false).onClose(() -> cancel(futures));
+    }
+
+    /**
+     * Cancels the mazes that are still being generated or waiting to be.
+     *
+     * @param futures the workers' tasks
+     */
+    private static void cancel(List<Future<?>> futures) {
+        for (Future<?> f : futures) {
+            f.cancel(true);
+        }
+    }
+
+    /**
+     * Stops the workers. Mazes not yet generated are abandoned.
+     */
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+}
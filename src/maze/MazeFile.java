@@ -0,0 +1,201 @@
+package maze;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Saves mazes in a compact binary format and loads them back by mapping the
+ * file into memory. A loaded maze reads its walls straight from the mapped
+ * file, so loading costs the same whatever the maze size.
+ * <p>
+ * All values are little-endian. The file starts with a 64-byte header:</p>
+ * <pre>
+ *  0  4  magic "MAZE"
+ *  4  4  version, currently 1
+ *  8  4  width, in cells
+ * 12  4  height, in cells
+ * 16  8  seed
+ * 24  4  starting X-coordinate
+ * 28  4  starting Y-coordinate
+ * 32  2  length of the algorithm name in bytes, 0 if unknown
+ * 34 30  algorithm name, UTF-8, zero padded
+ * </pre>
+ * <p>
+ * The header is followed by the horizontal walls and then the vertical walls,
+ * each bit-packed into 64-bit words as in {@link WallBits}. That is about
+ * 2 bits per cell, compared with 8 characters per cell for
+ * {@link MazeGenerator#print(java.io.PrintStream)}.</p>
+ */
+public final class MazeFile {
+
+    /**
+     * The current format version.
+     */
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x455a414d;  // "MAZE", little-endian
+    private static final int HEADER_SIZE = 64;
+    private static final int MAX_NAME_LENGTH = 30;
+
+    private MazeFile() {
+    }
+
+    /**
+     * Saves a maze, replacing the file if it exists.
+     *
+     * @param maze the maze to save
+     * @param file the target file
+     * @throws IllegalArgumentException if the algorithm name is too long.
+     * @throws IOException if the file could not be written.
+     */
+    public static void write(MazeGenerator maze, File file) throws IOException {
+        byte[] name = maze.getAlgorithm() == null
+                ? new byte[0]
+                : maze.getAlgorithm().getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("Algorithm name too long: " + maze.getAlgorithm());
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(maze.getWidth())
+                .putInt(maze.getHeight())
+                .putLong(maze.getSeed())
+                .putInt(maze.getStartX())
+                .putInt(maze.getStartY())
+                .putShort((short) name.length)
+                .put(name);
+        // Called through Buffer so the class also runs on Java 8, which
+        // lacks ByteBuffer's own overrides
+        ((Buffer) buf).position(HEADER_SIZE);
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+            writeWords(maze.getHorizWalls(), buf, channel);
+            writeWords(maze.getVertWalls(), buf, channel);
+
+            ((Buffer) buf).flip();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        }
+    }
+
+    /**
+     * Appends all the words of a wall set, writing out the buffer whenever it
+     * fills.
+     *
+     * @param walls the walls
+     * @param buf the buffer
+     * @param channel the target channel
+     * @throws IOException if the buffer could not be written.
+     */
+    private static void writeWords(WallBits walls, ByteBuffer buf, FileChannel channel)
+            throws IOException {
+        long words = walls.getWordCount();
+        for (long w = 0; w < words; w++) {
+            if (!buf.hasRemaining()) {
+                ((Buffer) buf).flip();
+                while (buf.hasRemaining()) {
+                    channel.write(buf);
+                }
+                ((Buffer) buf).clear();
+            }
+            buf.putLong(walls.word(w));
+        }
+    }
+
+    /**
+     * Loads a maze by mapping the file read-only. The returned maze can be
+     * queried and printed but not reset or generated.
+     *
+     * @param file the file to load
+     * @return the loaded maze.
+     * @throws IOException if the file could not be read or is not a valid
+     * maze file.
+     */
+    public static MazeGenerator load(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new IOException("Truncated header: " + file);
+                }
+            }
+            ((Buffer) header).flip();
+
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a maze file: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version + ": " + file);
+            }
+            int width = header.getInt();
+            int height = header.getInt();
+            long seed = header.getLong();
+            int startX = header.getInt();
+            int startY = header.getInt();
+            int nameLength = header.getShort();
+            if (width <= 0 || height <= 0 || nameLength < 0 || nameLength > MAX_NAME_LENGTH) {
+                throw new IOException("Corrupt header: " + file);
+            }
+            byte[] name = new byte[nameLength];
+            header.get(name);
+
+            // Check that both planes are really there
+            long horizSize = (long) width * (height + 1);
+            long vertSize = (long) (width + 1) * height;
+            long horizBytes = MappedWallBits.byteCount(horizSize);
+            if (channel.size() < HEADER_SIZE + horizBytes + MappedWallBits.byteCount(vertSize)) {
+                throw new IOException("Truncated walls: " + file);
+            }
+
+            MazeGenerator maze = new Loaded(width, height,
+                    new MappedWallBits(channel, FileChannel.MapMode.READ_ONLY,
+                            HEADER_SIZE, horizSize),
+                    new MappedWallBits(channel, FileChannel.MapMode.READ_ONLY,
+                            HEADER_SIZE + horizBytes, vertSize));
+            maze.setSeed(seed);
+            maze.setStart(startX, startY);
+            if (nameLength > 0) {
+                maze.setAlgorithm(new String(name, StandardCharsets.UTF_8));
+            }
+            return maze;
+        } catch (IndexOutOfBoundsException ex) {
+            throw new IOException("Corrupt header: " + file, ex);
+        }
+    }
+
+    /**
+     * A maze loaded from a file.
+     */
+    private static final class Loaded extends MazeGenerator {
+
+        Loaded(int width, int height, WallBits horizWalls, WallBits vertWalls) {
+            super(width, height, horizWalls, vertWalls);
+        }
+
+        @Override
+        protected void generateMaze() {
+            // Nothing to do: the walls come from the file. This is never
+            // called anyway, since generate() resets the maze first and a
+            // read-only maze refuses to be reset.
+        }
+
+        @Override
+        public String toString() {
+            return "Loaded maze";
+        }
+    }
+}
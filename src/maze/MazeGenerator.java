@@ -5,8 +5,17 @@
  */
 package maze;
 
-import java.util.Arrays;
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Implements the basic requirements of a rectangular maze generator. Subclasses
@@ -14,7 +23,7 @@ import java.io.PrintStream;
  *
  * @author Shawn Silverman
  */
-public abstract class MazeGenerator {
+public abstract class MazeGenerator implements MazeView {
 
     /*public static void main(String[] args) {
         MazeGenerator maze = new HuntAndKillMazeGenerator(10, 10, 0, 9);
@@ -41,12 +50,43 @@ public abstract class MazeGenerator {
      */
     public static final int LEFT = 3;
 
+    // Listeners notified after every generation, of any maze
+    private static final List<GenerationListener> globalListeners
+            = new CopyOnWriteArrayList<>();
+
     private int width;
     private int height;
 
-    // Stores whether the walls exist or not
-    private boolean[] horizWalls;
-    private boolean[] vertWalls;
+    // The starting cell, for algorithms that grow from one cell
+    private int startX;
+    private int startY;
+
+    // The seed, and whether it was chosen by the caller
+    private long seed;
+    private boolean seeded;
+    private SplittableRandom random;
+
+    // The registered algorithm name, if created through the registry
+    private String algorithm;
+
+    // Listeners for this maze only, created on first use
+    private volatile List<GenerationListener> listeners;
+
+    // Counters for the current generation, filled in by the algorithm
+    private long cellsVisited;
+    private long carves;
+    private long backtracks;
+    private long peakDepth;
+
+    // Counts changes to the walls, so views can tell when to redraw
+    private int modCount;
+
+    // Whether the walls are a read-only view of a saved maze
+    private final boolean readOnly;
+
+    // Stores whether the walls exist or not, one bit per wall
+    private WallBits horizWalls;
+    private WallBits vertWalls;
 
     /**
      * A convenience structure that represents one cell. It contains a cell's
@@ -84,37 +124,298 @@ public abstract class MazeGenerator {
      * @throws IllegalArgumentException if either size non-positive.
      */
     protected MazeGenerator(int width, int height) {
-        if (width <= 0 || height <= 0) {
-            throw new IllegalArgumentException("Size must be positive " + width + " " + height);
-        }
+        checkSize(width, height);
 
         this.width = width;
         this.height = height;
+        this.readOnly = false;
 
         // Create the walls
-        horizWalls = new boolean[width * (height + 1)];
-        vertWalls = new boolean[(width + 1) * height];
+        horizWalls = WallBits.allocate((long) width * (height + 1));
+        vertWalls = WallBits.allocate((long) (width + 1) * height);
+
+        reset();
+    }
+
+    /**
+     * Create a read-only maze over walls that already exist, such as ones
+     * loaded from a file. The maze can't be reset or generated.
+     *
+     * @param width the maze width, in cells
+     * @param height the maze height, in cells
+     * @param horizWalls the horizontal walls
+     * @param vertWalls the vertical walls
+     * @throws IllegalArgumentException if either size non-positive, or if the
+     * walls don't match the size.
+     */
+    MazeGenerator(int width, int height, WallBits horizWalls, WallBits vertWalls) {
+        checkSize(width, height);
+        if (horizWalls.size() != (long) width * (height + 1)
+                || vertWalls.size() != (long) (width + 1) * height) {
+            throw new IllegalArgumentException("Walls don't match size " + width + " " + height);
+        }
+
+        this.width = width;
+        this.height = height;
+        this.readOnly = true;
+        this.horizWalls = horizWalls;
+        this.vertWalls = vertWalls;
+    }
+
+    /**
+     * Create a new maze generator whose walls are stored in a memory-mapped
+     * file instead of on the heap. This allows mazes far larger than the heap;
+     * pages are loaded from disk as they are touched. The file is created or
+     * resized as needed and its contents are overwritten. The horizontal walls
+     * come first, followed by the vertical walls, each as little-endian 64-bit
+     * words. Call {@link #flush()} to make sure the maze is on disk.
+     *
+     * @param width the maze width, in cells
+     * @param height the maze height, in cells
+     * @param file the backing file
+     * @throws IllegalArgumentException if either size non-positive.
+     * @throws IOException if the file could not be mapped.
+     */
+    protected MazeGenerator(int width, int height, File file) throws IOException {
+        checkSize(width, height);
+
+        this.width = width;
+        this.height = height;
+        this.readOnly = false;
+
+        // Map the walls
+        long horizSize = (long) width * (height + 1);
+        long vertSize = (long) (width + 1) * height;
+        long horizBytes = MappedWallBits.byteCount(horizSize);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(horizBytes + MappedWallBits.byteCount(vertSize));
+
+            FileChannel channel = raf.getChannel();
+            horizWalls = new MappedWallBits(channel, FileChannel.MapMode.READ_WRITE,
+                    0, horizSize);
+            vertWalls = new MappedWallBits(channel, FileChannel.MapMode.READ_WRITE,
+                    horizBytes, vertSize);
+        }
 
         reset();
     }
 
+    /**
+     * Checks that the maze size is valid.
+     *
+     * @param width the maze width, in cells
+     * @param height the maze height, in cells
+     * @throws IllegalArgumentException if either size non-positive.
+     */
+    static void checkSize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Size must be positive " + width + " " + height);
+        }
+    }
+
     /**
      * Resets the maze.
+     *
+     * @throws UnsupportedOperationException if the maze is read-only.
      */
     public final void reset() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Read-only maze");
+        }
+
         // Fill the walls
 
-        Arrays.fill(horizWalls, true);
-        Arrays.fill(vertWalls, true);
+        horizWalls.fill();
+        vertWalls.fill();
+        modCount++;
+    }
+
+    /**
+     * Writes the walls back to their backing file, if there is one.
+     */
+    public void flush() {
+        horizWalls.flush();
+        vertWalls.flush();
     }
 
     /**
      * Generates the maze. This first resets the maze by calling
      * {@link #reset()}.
+     * <p>
+     * If a seed was set with {@link #setSeed(long)}, every call produces the
+     * same maze. Otherwise a new seed is chosen each time, and can be read
+     * back with {@link #getSeed()} to reproduce the maze later.</p>
+     * <p>
+     * If any {@link GenerationListener}s are registered, the generation is
+     * timed and they are sent its {@link GenerationStats}. With no listeners
+     * nothing is measured.</p>
+     *
+     * @throws UnsupportedOperationException if the maze is read-only.
      */
     public final void generate() {
         reset();
+        if (!seeded) {
+            seed = ThreadLocalRandom.current().nextLong();
+        }
+        random = new SplittableRandom(seed);
+        cellsVisited = 0;
+        carves = 0;
+        backtracks = 0;
+        peakDepth = 0;
+
+        List<GenerationListener> local = listeners;
+        if ((local == null || local.isEmpty()) && globalListeners.isEmpty()) {
+            generateMaze();
+            return;
+        }
+
+        long startBytes = GenerationStats.currentThreadAllocatedBytes();
+        long startTime = System.nanoTime();
         generateMaze();
+        long nanos = System.nanoTime() - startTime;
+        long endBytes = GenerationStats.currentThreadAllocatedBytes();
+
+        GenerationStats stats = new GenerationStats(
+                algorithm != null ? algorithm : toString(),
+                width, height,
+                cellsVisited, carves, backtracks, peakDepth,
+                nanos,
+                startBytes < 0 || endBytes < 0 ? -1 : endBytes - startBytes);
+        if (local != null) {
+            for (GenerationListener l : local) {
+                l.generated(this, stats);
+            }
+        }
+        for (GenerationListener l : globalListeners) {
+            l.generated(this, stats);
+        }
+    }
+
+    /**
+     * Records the work done by the algorithm, for the statistics sent to
+     * {@link GenerationListener}s. Algorithms that work in several passes or
+     * tasks may call this once per pass; the counts are summed and the peak
+     * depth is the largest seen.
+     *
+     * @param visited the number of cells visited
+     * @param carves the number of walls carved
+     * @param backtracks the number of steps undone or thrown away
+     * @param peakDepth the largest stack, queue or frontier size reached
+     */
+    protected final void recordWalk(long visited, long carves, long backtracks, long peakDepth) {
+        this.cellsVisited += visited;
+        this.carves += carves;
+        this.backtracks += backtracks;
+        this.peakDepth = Math.max(this.peakDepth, peakDepth);
+    }
+
+    /**
+     * Adds a listener that is notified after each generation of this maze.
+     *
+     * @param l the listener to add
+     * @throws NullPointerException if the listener is <code>null</code>.
+     */
+    public void addGenerationListener(GenerationListener l) {
+        if (l == null) {
+            throw new NullPointerException();
+        }
+
+        synchronized (this) {
+            if (listeners == null) {
+                listeners = new CopyOnWriteArrayList<>();
+            }
+        }
+        listeners.add(l);
+    }
+
+    /**
+     * Removes a listener added with
+     * {@link #addGenerationListener(GenerationListener)}.
+     *
+     * @param l the listener to remove
+     */
+    public void removeGenerationListener(GenerationListener l) {
+        List<GenerationListener> local = listeners;
+        if (local != null) {
+            local.remove(l);
+        }
+    }
+
+    /**
+     * Adds a listener that is notified after each generation of any maze.
+     * Listeners are called on the generating thread, so they must be
+     * thread-safe.
+     *
+     * @param l the listener to add
+     * @throws NullPointerException if the listener is <code>null</code>.
+     */
+    public static void addGlobalGenerationListener(GenerationListener l) {
+        if (l == null) {
+            throw new NullPointerException();
+        }
+        globalListeners.add(l);
+    }
+
+    /**
+     * Removes a listener added with
+     * {@link #addGlobalGenerationListener(GenerationListener)}.
+     *
+     * @param l the listener to remove
+     */
+    public static void removeGlobalGenerationListener(GenerationListener l) {
+        globalListeners.remove(l);
+    }
+
+    /**
+     * Sets the seed for all later generations. A maze is fully determined by
+     * its algorithm, size, starting cell and seed.
+     *
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        this.seeded = true;
+    }
+
+    /**
+     * Gets the seed. After {@link #generate()}, this is the seed that was used,
+     * whether or not it was set explicitly.
+     *
+     * @return the seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the name of the algorithm, as registered in {@link MazeGenerators}.
+     *
+     * @return the algorithm name, or <code>null</code> if this generator was
+     * not created through the registry.
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Sets the name of the algorithm.
+     *
+     * @param algorithm the algorithm name
+     */
+    void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Gets the source of randomness for the current generation. It is seeded
+     * from {@link #getSeed()} at the start of {@link #generate()}. Generators
+     * that work in parallel should {@link SplittableRandom#split() split} it,
+     * in a fixed order, once per task.
+     *
+     * @return the source of randomness.
+     */
+    protected final SplittableRandom getRandom() {
+        return random;
     }
 
     /**
@@ -178,32 +479,136 @@ public abstract class MazeGenerator {
         checkDirection(direction);
         checkLocation(x, y);
 
-        int index = -1;
-        boolean[] array = null;
+        long index = -1;
+        WallBits walls = null;
 
         switch (direction) {
             case UP:
-                index = y * width + x;
-                array = horizWalls;
+                index = (long) y * width + x;
+                walls = horizWalls;
                 break;
             case DOWN:
-                index = (y + 1) * width + x;
-                array = horizWalls;
+                index = (long) (y + 1) * width + x;
+                walls = horizWalls;
                 break;
             case LEFT:
-                index = y * (width + 1) + x;
-                array = vertWalls;
+                index = (long) y * (width + 1) + x;
+                walls = vertWalls;
                 break;
             case RIGHT:
-                index = y * (width + 1) + (x + 1);
-                array = vertWalls;
+                index = (long) y * (width + 1) + (x + 1);
+                walls = vertWalls;
+                break;
+        }
+
+        // Clear the wall and return what it was before
+        return walls.clear(index);
+    }
+
+    /**
+     * Carves a path in the given direction from the given cell, without
+     * checking the arguments. This is for generators' inner loops, where the
+     * location and direction are already known to be valid.
+     *
+     * @param x the starting cell's X-coordinate
+     * @param y the starting cell's Y-coordinate
+     * @param direction the direction to carve
+     * @see #carve(int, int, int)
+     */
+    protected final void carveUnchecked(int x, int y, int direction) {
+        switch (direction) {
+            case UP:
+                horizWalls.clear((long) y * width + x);
                 break;
+            case DOWN:
+                horizWalls.clear((long) (y + 1) * width + x);
+                break;
+            case LEFT:
+                vertWalls.clear((long) y * (width + 1) + x);
+                break;
+            case RIGHT:
+                vertWalls.clear((long) y * (width + 1) + (x + 1));
+                break;
+        }
+    }
+
+    /**
+     * Removes a wall from a generated maze, such as for walls that move during
+     * a game. Unlike {@link #carve(int, int, int)}, this may be called by
+     * anyone.
+     *
+     * @param x the cell's X-coordinate
+     * @param y the cell's Y-coordinate
+     * @param direction the wall's direction from the cell
+     * @return whether the wall existed and was removed.
+     * @throws IllegalArgumentException if the direction value is invalid.
+     * @throws IndexOutOfBoundsException if the coordinate is out of range.
+     * @throws UnsupportedOperationException if the maze is read-only.
+     * @see DynamicMaze
+     */
+    public boolean openWall(int x, int y, int direction) {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Read-only maze");
         }
+        if (!carve(x, y, direction)) {
+            return false;
+        }
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Adds a wall to a generated maze. This can make the maze imperfect, or
+     * cut it in two.
+     *
+     * @param x the cell's X-coordinate
+     * @param y the cell's Y-coordinate
+     * @param direction the wall's direction from the cell
+     * @return whether the wall was absent and was added.
+     * @throws IllegalArgumentException if the direction value is invalid.
+     * @throws IndexOutOfBoundsException if the coordinate is out of range.
+     * @throws UnsupportedOperationException if the maze is read-only.
+     * @see DynamicMaze
+     */
+    public boolean closeWall(int x, int y, int direction) {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Read-only maze");
+        }
+        checkDirection(direction);
+        checkLocation(x, y);
 
-        // Set the wall to 'false' and return what it was before
-        boolean b = array[index];
-        array[index] = false;
-        return b;
+        boolean wasPresent;
+        switch (direction) {
+            case UP:
+                wasPresent = horizWalls.set((long) y * width + x);
+                break;
+            case DOWN:
+                wasPresent = horizWalls.set((long) (y + 1) * width + x);
+                break;
+            case LEFT:
+                wasPresent = vertWalls.set((long) y * (width + 1) + x);
+                break;
+            default:
+                wasPresent = vertWalls.set((long) y * (width + 1) + (x + 1));
+                break;
+        }
+        if (wasPresent) {
+            return false;
+        }
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Gets a counter that changes whenever the walls are reset, generated,
+     * opened or closed through this object. Views that cache a drawing of
+     * the maze compare it with the value they drew to see if they are out of
+     * date. Changes made directly to the {@link WallBits} are not counted.
+     *
+     * @return the modification count.
+     */
+    public int getModCount() {
+        return modCount;
     }
 
     /**
@@ -220,36 +625,91 @@ public abstract class MazeGenerator {
      * @see #DOWN
      * @see #LEFT
      */
+    @Override
     public boolean isWallPresent(int x, int y, int direction) {
         // Check the arguments
 
         checkDirection(direction);
         checkLocation(x, y);
 
-        int index = -1;
-        boolean[] array = null;
+        long index = -1;
+        WallBits walls = null;
 
         switch (direction) {
             case UP:
-                index = y * width + x;
-                array = horizWalls;
+                index = (long) y * width + x;
+                walls = horizWalls;
                 break;
             case DOWN:
-                index = (y + 1) * width + x;
-                array = horizWalls;
+                index = (long) (y + 1) * width + x;
+                walls = horizWalls;
                 break;
             case LEFT:
-                index = y * (width + 1) + x;
-                array = vertWalls;
+                index = (long) y * (width + 1) + x;
+                walls = vertWalls;
                 break;
             case RIGHT:
-                index = y * (width + 1) + (x + 1);
-                array = vertWalls;
+                index = (long) y * (width + 1) + (x + 1);
+                walls = vertWalls;
                 break;
         }
 
-        // Set the wall to 'false' and return what it was before
-        return array[index];
+        return walls.get(index);
+    }
+
+    @Override
+    public int getWallMask(int x, int y) {
+        checkLocation(x, y);
+        return getWallMaskUnchecked(x, y);
+    }
+
+    @Override
+    public int getWallMaskUnchecked(int x, int y) {
+        long top = (long) y * width + x;
+        long left = (long) y * (width + 1) + x;
+        return (horizWalls.get(top) ? WALL_UP : 0)
+                | (vertWalls.get(left + 1) ? WALL_RIGHT : 0)
+                | (horizWalls.get(top + width) ? WALL_DOWN : 0)
+                | (vertWalls.get(left) ? WALL_LEFT : 0);
+    }
+
+    /**
+     * Gets the walls around every cell of a row. The walls are read 64 cells
+     * at a time, so this costs a few word reads per 64 cells rather than four
+     * lookups per cell.
+     *
+     * @param y the row's Y-coordinate
+     * @param masks the destination, at least <code>getWidth()</code> long
+     * @throws IndexOutOfBoundsException if the row is out of range or the
+     * array is too short.
+     */
+    @Override
+    public void getRowMasks(int y, byte[] masks) {
+        if (y < 0 || height <= y) {
+            throw new IndexOutOfBoundsException("Y out of range: " + y);
+        }
+        if (masks.length < width) {
+            throw new IndexOutOfBoundsException("Array too short: " + masks.length);
+        }
+
+        long top = (long) y * width;
+        long left = (long) y * (width + 1);
+        for (int x0 = 0; x0 < width; x0 += 64) {
+            int n = Math.min(64, width - x0);
+            long ups = horizWalls.getBits(top + x0, n);
+            long downs = horizWalls.getBits(top + width + x0, n);
+            long lefts = vertWalls.getBits(left + x0, n);
+            long last = vertWalls.getBits(left + x0 + n, 1);
+
+            // The right wall of cell i is the left wall of cell i + 1
+            long rights = (lefts >>> 1) | (last << (n - 1));
+            for (int i = 0; i < n; i++) {
+                masks[x0 + i] = (byte) (((ups >>> i) & 1) << UP
+                        | ((rights >>> i) & 1) << RIGHT
+                        | ((downs >>> i) & 1) << DOWN
+                        | ((lefts >>> i) & 1) << LEFT);
+            }
+        }
     }
 
     /**
@@ -261,34 +721,51 @@ public abstract class MazeGenerator {
      * </ul>
      *
      * @param out the target {@link PrintStream}
+     * @see AsciiRowSink
      */
     public void print(PrintStream out) {
-        for (int y = 0; y < height; y++) {
-            // Print a row of horizontal walls
+        try {
+            export(new AsciiRowSink(out));
+        } catch (IOException ex) {
+            // A PrintStream never throws
+            throw new UncheckedIOException(ex);
+        }
+        out.flush();
+    }
 
-            int rowBase = y * width;
-            for (int x = 0; x < width; x++) {
-                out.print('*');
-                out.print(horizWalls[rowBase + x] ? " - " : "   ");
-            }
-            out.println('*');
+    /**
+     * Prints the maze to a channel, in the same format as
+     * {@link #print(PrintStream)}. Whole rows are written at once, so this
+     * runs at about the speed of the channel.
+     *
+     * @param out the target channel, which is not closed
+     * @throws IOException if the maze could not be written.
+     */
+    public void print(WritableByteChannel out) throws IOException {
+        export(new AsciiRowSink(out));
+    }
 
-            // Print a row of vertical walls
-            rowBase = y * (width + 1);
-            for (int x = 0; x < width; x++) {
-                out.print(vertWalls[rowBase + x] ? "|" : " ");
-                out.print("   ");
-            }
-            out.println(vertWalls[rowBase + width] ? "|" : " ");
-        }
+    /**
+     * Sends the maze to a sink one row of walls at a time, top to bottom.
+     *
+     * @param sink receives the rows
+     * @throws IOException if the sink could not write a row.
+     */
+    public void export(RowSink sink) throws IOException {
+        long[] horizRow = new long[(width + 63) >>> 6];
+        long[] vertRow = new long[(width + 64) >>> 6];
 
-        // Print the last row of horizontal walls
-        int rowBase = height * width;
-        for (int x = 0; x < width; x++) {
-            out.print('*');
-            out.print(horizWalls[rowBase + x] ? " - " : "   ");
+        for (int y = 0; y < height; y++) {
+            horizWalls.copyBits((long) y * width, horizRow, width);
+            sink.horizontalWalls(horizRow, width);
+            vertWalls.copyBits((long) y * (width + 1), vertRow, width + 1);
+            sink.verticalWalls(vertRow, width);
         }
-        out.println('*');
+
+        // The last row of horizontal walls
+        horizWalls.copyBits((long) height * width, horizRow, width);
+        sink.horizontalWalls(horizRow, width);
+        sink.finish();
     }
 
     /**
@@ -296,6 +773,7 @@ public abstract class MazeGenerator {
      *
      * @return the maze width in cells.
      */
+    @Override
     public int getWidth() {
         return width;
     }
@@ -305,15 +783,63 @@ public abstract class MazeGenerator {
      *
      * @return the maze height in cells.
      */
+    @Override
     public int getHeight() {
         return height;
     }
 
-    public boolean[] getHorizWalls() {
+    /**
+     * Sets the starting cell. Algorithms that grow the maze outwards from one
+     * cell begin here; the others ignore it. The default is <code>(0, 0)</code>.
+     *
+     * @param startX the starting X-coordinate
+     * @param startY the starting Y-coordinate
+     * @throws IndexOutOfBoundsException if the coordinate is out of range.
+     */
+    public void setStart(int startX, int startY) {
+        checkLocation(startX, startY);
+
+        this.startX = startX;
+        this.startY = startY;
+    }
+
+    /**
+     * Gets the starting cell's X-coordinate.
+     *
+     * @return the starting X-coordinate.
+     */
+    public int getStartX() {
+        return startX;
+    }
+
+    /**
+     * Gets the starting cell's Y-coordinate.
+     *
+     * @return the starting Y-coordinate.
+     */
+    public int getStartY() {
+        return startY;
+    }
+
+    /**
+     * Gets the horizontal walls. There are <code>width * (height + 1)</code>
+     * of them, row-major, and the wall above cell <code>(x, y)</code> has index
+     * <code>y * width + x</code>.
+     *
+     * @return the horizontal walls.
+     */
+    public WallBits getHorizWalls() {
         return horizWalls;
     }
 
-    public boolean[] getVertWalls() {
+    /**
+     * Gets the vertical walls. There are <code>(width + 1) * height</code> of
+     * them, row-major, and the wall to the left of cell <code>(x, y)</code> has
+     * index <code>y * (width + 1) + x</code>.
+     *
+     * @return the vertical walls.
+     */
+    public WallBits getVertWalls() {
         return vertWalls;
     }
 
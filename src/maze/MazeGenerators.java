@@ -0,0 +1,114 @@
+package maze;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A registry of maze generation algorithms, looked up by name. The built-in
+ * algorithms, roughly from cheapest to most expensive, are:
+ * <table summary="Built-in algorithms">
+ * <tr><th>Name</th><th>Time</th><th>Extra memory</th><th>Texture</th></tr>
+ * <tr><td><code>binarytree</code></td><td>O(n)</td><td>none</td>
+ * <td>diagonal bias, open top and left edges</td></tr>
+ * <tr><td><code>sidewinder</code></td><td>O(n)</td><td>none</td>
+ * <td>vertical bias, open top row</td></tr>
+ * <tr><td><code>backtracker</code></td><td>O(n)</td><td>1 bit per cell plus 2
+ * bits per step of the longest path</td><td>long twisty corridors</td></tr>
+ * <tr><td><code>tiled</code></td><td>O(n / cores)</td><td>as
+ * <code>backtracker</code>, per tile</td><td>as <code>backtracker</code>,
+ * with visible tile seams</td></tr>
+ * <tr><td><code>kruskal</code></td><td>O(n &alpha;(n))</td><td>about 12 bytes
+ * per cell</td><td>many short dead ends</td></tr>
+ * <tr><td><code>prim</code></td><td>O(n log n)</td><td>1 bit per cell plus
+ * the frontier heap</td><td>very many short dead ends</td></tr>
+ * <tr><td><code>wilson</code></td><td>O(n) expected, but with a slow
+ * start</td><td>1 byte per cell</td><td>unbiased</td></tr>
+ * </table>
+ * <p>
+ * Other algorithms can be added with {@link #register(String, Factory)}.</p>
+ */
+public final class MazeGenerators {
+
+    /**
+     * Creates generators for one algorithm.
+     */
+    public interface Factory {
+
+        /**
+         * Creates a new generator.
+         *
+         * @param width the maze width, in cells
+         * @param height the maze height, in cells
+         * @return the new generator.
+         */
+        MazeGenerator create(int width, int height);
+    }
+
+    /**
+     * The name of the default algorithm, the Recursive Backtracker.
+     */
+    public static final String DEFAULT = "backtracker";
+
+    private static final Map<String, Factory> factories = new LinkedHashMap<>();
+
+    static {
+        register("binarytree", BinaryTreeGenerator::new);
+        register("sidewinder", SidewinderGenerator::new);
+        register(DEFAULT, RecursiveBacktracker::new);
+        register("tiled", TiledParallelGenerator::new);
+        register("kruskal", KruskalGenerator::new);
+        register("prim", PrimGenerator::new);
+        register("wilson", WilsonGenerator::new);
+    }
+
+    private MazeGenerators() {
+    }
+
+    /**
+     * Registers an algorithm, replacing any with the same name.
+     *
+     * @param name the algorithm name
+     * @param factory creates generators for the algorithm
+     */
+    public static synchronized void register(String name, Factory factory) {
+        if (name == null || factory == null) {
+            throw new NullPointerException();
+        }
+        factories.put(name, factory);
+    }
+
+    /**
+     * Gets the names of the registered algorithms, in registration order.
+     *
+     * @return the algorithm names.
+     */
+    public static synchronized Set<String> getNames() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(factories.keySet()));
+    }
+
+    /**
+     * Creates a generator for the named algorithm.
+     *
+     * @param name the algorithm name
+     * @param width the maze width, in cells
+     * @param height the maze height, in cells
+     * @return the new generator.
+     * @throws IllegalArgumentException if there is no such algorithm, or if
+     * either size is non-positive.
+     */
+    public static MazeGenerator create(String name, int width, int height) {
+        Factory factory;
+        synchronized (MazeGenerators.class) {
+            factory = factories.get(name);
+        }
+        if (factory == null) {
+            throw new IllegalArgumentException("Unknown algorithm: " + name);
+        }
+        MazeGenerator maze = factory.create(width, height);
+        maze.setAlgorithm(name);
+        return maze;
+    }
+}
@@ -0,0 +1,217 @@
+package maze;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Keeps freshly generated mazes ready for use, so that starting a round never
+ * waits for generation. Mazes are kept per size; taking one is a queue poll,
+ * and the pool then tops itself back up on a background thread.
+ * <p>
+ * Each size keeps up to <code>capacity</code> mazes. When more than
+ * <code>maxSizes</code> sizes are in use, the size that was taken from least
+ * recently is dropped along with its mazes.</p>
+ */
+public class MazePool implements AutoCloseable {
+
+    private final String algorithm;
+    private final int capacity;
+    private final int maxSizes;
+
+    // Ready mazes by size, least recently taken first. Guarded by this.
+    private final LinkedHashMap<Long, ArrayDeque<MazeGenerator>> ready = new LinkedHashMap<>();
+    private final Set<Long> filling = new HashSet<>();
+
+    private final ExecutorService filler = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "maze-pool");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    /**
+     * Creates a new maze pool.
+     *
+     * @param algorithm the algorithm name, as registered in
+     * {@link MazeGenerators}
+     * @param capacity the number of mazes to keep ready per size
+     * @param maxSizes the number of sizes to keep before evicting
+     * @throws IllegalArgumentException if either count is non-positive.
+     */
+    public MazePool(String algorithm, int capacity, int maxSizes) {
+        if (capacity <= 0 || maxSizes <= 0) {
+            throw new IllegalArgumentException("Bad pool size: " + capacity + " " + maxSizes);
+        }
+
+        this.algorithm = algorithm;
+        this.capacity = capacity;
+        this.maxSizes = maxSizes;
+    }
+
+    /**
+     * Starts filling the pool for the given size in the background.
+     *
+     * @param width the maze width, in cells
+     * @param height the maze height, in cells
+     * @throws IllegalArgumentException if either size is non-positive.
+     */
+    public void prepare(int width, int height) {
+        // Before the size is marked as used, which could evict another
+        MazeGenerator.checkSize(width, height);
+        synchronized (this) {
+            queue(key(width, height));
+        }
+        refill(width, height);
+    }
+
+    /**
+     * Takes a generated maze of the given size. If one is ready this returns
+     * immediately; otherwise the maze is generated on the calling thread.
+     * Either way, the pool is topped up in the background.
+     *
+     * @param width the maze width, in cells
+     * @param height the maze height, in cells
+     * @return a generated maze, which now belongs to the caller.
+     * @throws IllegalArgumentException if either size is non-positive.
+     */
+    public MazeGenerator take(int width, int height) {
+        MazeGenerator.checkSize(width, height);
+        MazeGenerator maze;
+        synchronized (this) {
+            maze = queue(key(width, height)).poll();
+        }
+        refill(width, height);
+
+        if (maze == null) {
+            maze = MazeGenerators.create(algorithm, width, height);
+            maze.generate();
+        }
+        return maze;
+    }
+
+    /**
+     * Gets the number of mazes ready for a size.
+     *
+     * @param width the maze width, in cells
+     * @param height the maze height, in cells
+     * @return the number of ready mazes.
+     */
+    public synchronized int getReadyCount(int width, int height) {
+        ArrayDeque<MazeGenerator> queue = ready.get(key(width, height));
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * Stops filling the pool and drops every ready maze.
+     */
+    @Override
+    public void close() {
+        filler.shutdownNow();
+        synchronized (this) {
+            ready.clear();
+        }
+    }
+
+    /**
+     * Gets the queue for a size, creating it if needed, and marks the size as
+     * the most recently used. This evicts the least recently used size if
+     * there are too many.
+     *
+     * @param key the size key
+     * @return the queue.
+     */
+    private ArrayDeque<MazeGenerator> queue(long key) {
+        ArrayDeque<MazeGenerator> queue = ready.remove(key);
+        if (queue == null) {
+            queue = new ArrayDeque<>(capacity);
+        }
+        ready.put(key, queue);
+
+        if (ready.size() > maxSizes) {
+            Iterator<Long> eldest = ready.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+        return queue;
+    }
+
+    /**
+     * Schedules a background refill for a size, unless one is already
+     * scheduled.
+     *
+     * @param width the maze width, in cells
+     * @param height the maze height, in cells
+     */
+    private void refill(int width, int height) {
+        long key = key(width, height);
+        synchronized (this) {
+            if (!filling.add(key)) {
+                return;
+            }
+        }
+
+        Runnable task = () -> {
+            // The key is released in the same synchronized block that decides
+            // to stop, so a take() can never see it held by a task that has
+            // already given up
+            boolean released = false;
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    synchronized (this) {
+                        ArrayDeque<MazeGenerator> queue = ready.get(key);
+                        if (queue == null || queue.size() >= capacity) {
+                            filling.remove(key);
+                            released = true;
+                            return;
+                        }
+                    }
+
+                    MazeGenerator maze = MazeGenerators.create(algorithm, width, height);
+                    maze.generate();
+
+                    synchronized (this) {
+                        ArrayDeque<MazeGenerator> queue = ready.get(key);
+                        if (queue == null) {
+                            filling.remove(key);  // Evicted meanwhile
+                            released = true;
+                            return;
+                        }
+                        queue.add(maze);
+                    }
+                }
+            } finally {
+                if (!released) {
+                    // Interrupted, or generation failed
+                    synchronized (this) {
+                        filling.remove(key);
+                    }
+                }
+            }
+        };
+        try {
+            filler.execute(task);
+        } catch (RejectedExecutionException ex) {
+            // Closed
+            synchronized (this) {
+                filling.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Packs a size into a map key.
+     *
+     * @param width the maze width, in cells
+     * @param height the maze height, in cells
+     * @return the key.
+     */
+    private static long key(int width, int height) {
+        return ((long) width << 32) | (height & 0xffffffffL);
+    }
+}
@@ -0,0 +1,122 @@
+package maze;
+
+/**
+ * Describes one maze completely: its algorithm, size, starting cell and seed.
+ * Generating the same spec always produces the same maze.
+ */
+public final class MazeSpec {
+
+    private final String algorithm;
+    private final int width;
+    private final int height;
+    private final int startX;
+    private final int startY;
+    private final long seed;
+
+    /**
+     * Creates a new maze spec.
+     *
+     * @param algorithm the algorithm name, as registered in
+     * {@link MazeGenerators}
+     * @param width the maze width, in cells
+     * @param height the maze height, in cells
+     * @param startX the starting X-coordinate
+     * @param startY the starting Y-coordinate
+     * @param seed the seed
+     * @throws IllegalArgumentException if either size is non-positive.
+     * @throws IndexOutOfBoundsException if the starting cell is out of range.
+     */
+    public MazeSpec(String algorithm, int width, int height,
+            int startX, int startY, long seed) {
+        if (algorithm == null) {
+            throw new NullPointerException();
+        }
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Size must be positive " + width + " " + height);
+        }
+        if (startX < 0 || width <= startX || startY < 0 || height <= startY) {
+            throw new IndexOutOfBoundsException("Start out of range: " + startX + " " + startY);
+        }
+
+        this.algorithm = algorithm;
+        this.width = width;
+        this.height = height;
+        this.startX = startX;
+        this.startY = startY;
+        this.seed = seed;
+    }
+
+    /**
+     * Creates a generator for this spec and generates the maze.
+     *
+     * @return the generated maze.
+     * @throws IllegalArgumentException if the algorithm is not registered.
+     */
+    public MazeGenerator generate() {
+        MazeGenerator maze = MazeGenerators.create(algorithm, width, height);
+        maze.setStart(startX, startY);
+        maze.setSeed(seed);
+        maze.generate();
+        return maze;
+    }
+
+    /**
+     * Gets the name of the algorithm, as registered in {@link MazeGenerators}.
+     *
+     * @return the algorithm name.
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Gets the maze width, in cells.
+     *
+     * @return the maze width in cells.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the maze height, in cells.
+     *
+     * @return the maze height in cells.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the starting cell's X-coordinate.
+     *
+     * @return the starting X-coordinate.
+     */
+    public int getStartX() {
+        return startX;
+    }
+
+    /**
+     * Gets the starting cell's Y-coordinate.
+     *
+     * @return the starting Y-coordinate.
+     */
+    public int getStartY() {
+        return startY;
+    }
+
+    /**
+     * Gets the seed.
+     *
+     * @return the seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public String toString() {
+        return algorithm + " " + width + "x" + height
+                + " from (" + startX + ", " + startY + ") seed " + seed;
+    }
+}
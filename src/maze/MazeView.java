@@ -0,0 +1,92 @@
+package maze;
+
+/**
+ * Read-only access to the walls of a rectangular maze. Besides single-wall
+ * queries, a view can describe all four walls of a cell at once as a 4-bit
+ * mask, and fill in the masks for a whole row in one call.
+ * <p>
+ * Bit <code>d</code> of a mask is set when the wall in direction
+ * <code>d</code> is present, where <code>d</code> is one of
+ * {@link MazeGenerator#UP}, {@link MazeGenerator#RIGHT},
+ * {@link MazeGenerator#DOWN} or {@link MazeGenerator#LEFT}.</p>
+ */
+public interface MazeView {
+
+    /**
+     * The mask bit for the wall above a cell.
+     */
+    int WALL_UP = 1 << MazeGenerator.UP;
+
+    /**
+     * The mask bit for the wall to the right of a cell.
+     */
+    int WALL_RIGHT = 1 << MazeGenerator.RIGHT;
+
+    /**
+     * The mask bit for the wall below a cell.
+     */
+    int WALL_DOWN = 1 << MazeGenerator.DOWN;
+
+    /**
+     * The mask bit for the wall to the left of a cell.
+     */
+    int WALL_LEFT = 1 << MazeGenerator.LEFT;
+
+    /**
+     * Gets the maze width, in cells.
+     *
+     * @return the maze width in cells.
+     */
+    int getWidth();
+
+    /**
+     * Gets the maze height, in cells.
+     *
+     * @return the maze height in cells.
+     */
+    int getHeight();
+
+    /**
+     * Checks if the specified wall is present.
+     *
+     * @param x the cell's X-coordinate
+     * @param y the cell's Y-coordinate
+     * @param direction the wall's direction from the cell
+     * @return whether the specified wall is present.
+     * @throws IllegalArgumentException if the direction value is invalid.
+     * @throws IndexOutOfBoundsException if the coordinate is out of range.
+     */
+    boolean isWallPresent(int x, int y, int direction);
+
+    /**
+     * Gets the walls around a cell.
+     *
+     * @param x the cell's X-coordinate
+     * @param y the cell's Y-coordinate
+     * @return the wall mask.
+     * @throws IndexOutOfBoundsException if the coordinate is out of range.
+     */
+    int getWallMask(int x, int y);
+
+    /**
+     * Gets the walls around a cell without checking the coordinate. This is
+     * for loops that already know they are inside the maze; the result for a
+     * coordinate outside the maze is undefined.
+     *
+     * @param x the cell's X-coordinate
+     * @param y the cell's Y-coordinate
+     * @return the wall mask.
+     */
+    int getWallMaskUnchecked(int x, int y);
+
+    /**
+     * Gets the walls around every cell of a row. Element <code>x</code> of
+     * the array receives the mask for cell <code>(x, y)</code>.
+     *
+     * @param y the row's Y-coordinate
+     * @param masks the destination, at least <code>getWidth()</code> long
+     * @throws IndexOutOfBoundsException if the row is out of range or the
+     * array is too short.
+     */
+    void getRowMasks(int y, byte[] masks);
+}
@@ -0,0 +1,200 @@
+package maze;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Implements a maze generator that uses Prim's algorithm with random wall
+ * weights. The maze grows outwards from the starting cell; each step removes
+ * the lightest wall between the maze and a cell outside it.
+ * <p>
+ * The frontier is a binary min-heap in a <code>long[]</code>. Each entry packs
+ * a 23-bit random weight above the cell index and direction of the wall, so
+ * comparing entries is comparing <code>long</code>s.</p>
+ * <p>
+ * This produces a maze with a very large number of short dead ends, radiating
+ * from the starting cell.</p>
+ * <p>
+ * Time is O(n log n) for n cells. Memory is a bit per cell for the visited
+ * flags plus up to three heap entries of 8 bytes per frontier cell; the
+ * frontier is usually a small fraction of the maze.</p>
+ *
+ * @see <a href="http://www.astrolog.org/labyrnth/algrithm.htm">Think Labyrinth:
+ * Maze Algorithms</a>
+ */
+public class PrimGenerator extends MazeGenerator {
+
+    // Bits below the weight, holding (cell index << 2) | direction
+    private static final int WEIGHT_SHIFT = 40;
+    private static final long WALL_MASK = (1L << WEIGHT_SHIFT) - 1;
+
+    private SplittableRandom rand;
+    private long[] heap = new long[64];
+    private int heapSize;
+    private int peakHeapSize;
+
+    /**
+     * Creates a new Prim's algorithm maze generator. This starts from
+     * <code>(0, 0)</code> unless {@link #setStart(int, int)} is called.
+     *
+     * @param width the maze width
+     * @param height the maze height
+     */
+    public PrimGenerator(int width, int height) {
+        super(width, height);
+    }
+
+    /**
+     * Generate the maze.
+     */
+    @Override
+    protected void generateMaze() {
+        int width = getWidth();
+        int height = getHeight();
+
+        long[] visited = new long[(int) (((long) width * height + 63) >>> 6)];
+        rand = getRandom();
+        heapSize = 0;
+        peakHeapSize = 0;
+
+        int x = getStartX();
+        int y = getStartY();
+        while (true) {
+            // Add the cell to the maze and its walls to the frontier
+            long index = (long) y * width + x;
+            visited[(int) (index >>> 6)] |= 1L << index;
+
+            if (y > 0 && !isSet(visited, index - width)) {
+                push(index, UP);
+            }
+            if (x < width - 1 && !isSet(visited, index + 1)) {
+                push(index, RIGHT);
+            }
+            if (y < height - 1 && !isSet(visited, index + width)) {
+                push(index, DOWN);
+            }
+            if (x > 0 && !isSet(visited, index - 1)) {
+                push(index, LEFT);
+            }
+
+            // Take the lightest wall that still leads outside the maze
+            long next;
+            int direction;
+            do {
+                if (heapSize == 0) {
+                    long cells = (long) width * height;
+                    recordWalk(cells, cells - 1, 0, peakHeapSize);
+                    return;
+                }
+                long wall = pop() & WALL_MASK;
+                index = wall >>> 2;
+                direction = (int) (wall & 3);
+                next = neighbour(index, direction, width);
+            } while (isSet(visited, next));
+
+            x = (int) (index % width);
+            y = (int) (index / width);
+            carveUnchecked(x, y, direction);
+            x = (int) (next % width);
+            y = (int) (next / width);
+        }
+    }
+
+    /**
+     * Gets the index of a neighbouring cell.
+     *
+     * @param index the cell index
+     * @param direction the direction
+     * @param width the maze width
+     * @return the neighbour's index.
+     */
+    private static long neighbour(long index, int direction, int width) {
+        switch (direction) {
+            case UP:
+                return index - width;
+            case RIGHT:
+                return index + 1;
+            case DOWN:
+                return index + width;
+            default:
+                return index - 1;
+        }
+    }
+
+    /**
+     * Adds a wall to the frontier with a random weight.
+     *
+     * @param index the cell index
+     * @param direction the wall's direction from the cell
+     */
+    private void push(long index, int direction) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heapSize * 2);
+        }
+
+        long entry = ((long) rand.nextInt(1 << 23) << WEIGHT_SHIFT) | (index << 2) | direction;
+
+        // Sift up
+        int i = heapSize++;
+        if (heapSize > peakHeapSize) {
+            peakHeapSize = heapSize;
+        }
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= entry) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = entry;
+    }
+
+    /**
+     * Removes the lightest wall from the frontier.
+     *
+     * @return the heap entry.
+     */
+    private long pop() {
+        long top = heap[0];
+        long entry = heap[--heapSize];
+
+        // Sift down
+        int i = 0;
+        int half = heapSize >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (entry <= heap[child]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = entry;
+        return top;
+    }
+
+    /**
+     * Checks whether a bit is set in a bit array.
+     *
+     * @param bits the bit array
+     * @param index the bit index
+     * @return whether the bit is set.
+     */
+    private static boolean isSet(long[] bits, long index) {
+        return (bits[(int) (index >>> 6)] & (1L << index)) != 0;
+    }
+
+    /**
+     * Returns a string representation of this object.
+     *
+     * @return a string representation of this object.
+     */
+    @Override
+    public String toString() {
+        return "Prim's algorithm maze generator";
+    }
+}
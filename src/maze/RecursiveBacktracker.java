@@ -5,8 +5,8 @@
  */
 package maze;
 
-import java.util.LinkedList;
-import java.util.Random;
+import java.io.File;
+import java.io.IOException;
 
 /**
  * Implements a maze generator that uses the Recursive Backtracking algorithm.
@@ -20,13 +20,6 @@ import java.util.Random;
  * @author Shawn Silverman
  */
 public class RecursiveBacktracker extends MazeGenerator {
-    // The starting coordinates
-
-    private int startX;
-    private int startY;
-
-    private Random rand = new Random();
-
     /**
      * Creates a new Recursive Backtracking maze generator. A random starting
      * location will be selected.
@@ -51,91 +44,41 @@ public class RecursiveBacktracker extends MazeGenerator {
             int startX, int startY) {
         super(width, height);
 
-        checkLocation(startX, startY);
+        setStart(startX, startY);
+    }
 
-        this.startX = startX;
-        this.startY = startY;
+    /**
+     * Creates a new Recursive Backtracking maze generator whose walls are
+     * stored in a memory-mapped file. This uses the given starting location.
+     *
+     * @param width the maze width
+     * @param height the maze height
+     * @param startX the starting X-coordinate
+     * @param startY the starting Y-coordinate
+     * @param file the backing file
+     * @throws IOException if the file could not be mapped.
+     * @see MazeGenerator#MazeGenerator(int, int, File)
+     */
+    public RecursiveBacktracker(int width, int height,
+            int startX, int startY, File file) throws IOException {
+        super(width, height, file);
+
+        setStart(startX, startY);
     }
 
     /**
      * Generate the maze.
+     *
+     * @see BacktrackWalker
      */
     @Override
     protected void generateMaze() {
-        int width = getWidth();
-        int height = getHeight();
-
-        boolean[] cells = new boolean[width * height];  // Visited flags
-        LinkedList<Cell> stack = new LinkedList<>();
-
-        Cell cell = new Cell(startX, startY);
-
-        stack.addFirst(cell);
-        int[] neighbours = new int[4];
-
-        do {
-            // Mark the current cell as visited
+        BacktrackWalker walker = BacktrackWalker.current();
+        walker.walk(this, 0, 0, getWidth(), getHeight(),
+                getStartX(), getStartY(), getRandom());
 
-            cells[cell.y * width + cell.x] = true;
-
-            // Examine the current cell's neighbours
-            int freeNeighbourCount = 0;
-            for (int i = 0; i < 4; i++) {
-                switch (i) {
-                    case UP:
-                        if (cell.y > 0 && !cells[(cell.y - 1) * width + cell.x]) {
-                            neighbours[freeNeighbourCount++] = i;
-                        }
-                        break;
-                    case RIGHT:
-                        if (cell.x < width - 1 && !cells[cell.y * width + (cell.x + 1)]) {
-                            neighbours[freeNeighbourCount++] = i;
-                        }
-                        break;
-                    case DOWN:
-                        if (cell.y < height - 1 && !cells[(cell.y + 1) * width + cell.x]) {
-                            neighbours[freeNeighbourCount++] = i;
-                        }
-                        break;
-                    case LEFT:
-                        if (cell.x > 0 && !cells[cell.y * width + (cell.x - 1)]) {
-                            neighbours[freeNeighbourCount++] = i;
-                        }
-                        break;
-                }
-            }
-
-            // Pick a random free neighbour
-            if (freeNeighbourCount > 0) {
-                stack.addFirst(cell);
-                cell = new Cell(cell.x, cell.y);
-
-                switch (neighbours[rand.nextInt(freeNeighbourCount)]) {
-                    case UP:
-                        carve(cell.x, cell.y, UP);
-                        cell.y--;
-                        break;
-                    case RIGHT:
-                        carve(cell.x, cell.y, RIGHT);
-                        cell.x++;
-                        break;
-                    case DOWN:
-                        carve(cell.x, cell.y, DOWN);
-                        cell.y++;
-                        break;
-                    case LEFT:
-                        carve(cell.x, cell.y, LEFT);
-                        cell.x--;
-                        break;
-                }
-                /*
-                System.out.println(cell);
-                print(System.out);
-                System.out.println();*/
-            } else {
-                cell = stack.removeFirst();
-            }
-        } while (!stack.isEmpty());
+        long cells = (long) getWidth() * getHeight();
+        recordWalk(cells, cells - 1, walker.getBacktracks(), walker.getPeakDepth());
     }
 
     /**
@@ -147,9 +90,4 @@ public class RecursiveBacktracker extends MazeGenerator {
     public String toString() {
         return "Recursive Backtracker maze generator";
     }
-
-    public void setStart(int startX, int startY) {
-        this.startX = startX;
-        this.startY = startY;
-    }
 }
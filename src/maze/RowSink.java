@@ -0,0 +1,44 @@
+package maze;
+
+import java.io.IOException;
+
+/**
+ * Receives a maze one row of walls at a time, top to bottom. A maze
+ * <code>height</code> cells tall arrives as a row of horizontal walls, then a
+ * row of vertical walls, repeated <code>height</code> times, followed by one
+ * last row of horizontal walls and a call to {@link #finish()}.
+ * <p>
+ * Rows are bit-packed the same way as {@link WallBits}: bit <code>x</code> of
+ * the array is wall <code>x</code>, and a set bit means the wall is present.
+ * The arrays are reused by the caller, so implementations must not keep
+ * them.</p>
+ */
+public interface RowSink {
+
+    /**
+     * Receives a row of horizontal walls. Wall <code>x</code> is the wall
+     * above cell <code>x</code> of the row that follows.
+     *
+     * @param walls the walls, <code>width</code> bits
+     * @param width the maze width, in cells
+     * @throws IOException if the row could not be written.
+     */
+    void horizontalWalls(long[] walls, int width) throws IOException;
+
+    /**
+     * Receives a row of vertical walls. Wall <code>x</code> is the wall to the
+     * left of cell <code>x</code>.
+     *
+     * @param walls the walls, <code>width + 1</code> bits
+     * @param width the maze width, in cells
+     * @throws IOException if the row could not be written.
+     */
+    void verticalWalls(long[] walls, int width) throws IOException;
+
+    /**
+     * Called after the last row.
+     *
+     * @throws IOException if any buffered output could not be written.
+     */
+    void finish() throws IOException;
+}
@@ -0,0 +1,71 @@
+package maze;
+
+import java.util.SplittableRandom;
+
+/**
+ * Implements a maze generator that uses the Sidewinder algorithm. The top row
+ * is one long corridor. Every other row is split into random runs of cells;
+ * each run is a horizontal corridor with one opening up into the row above.
+ * <p>
+ * This produces a maze with an open top row and a strong vertical bias: the
+ * path from any cell up to the top row never turns back down.</p>
+ * <p>
+ * Time is O(n) for n cells with one random number per cell, and there is no
+ * extra memory besides the start of the current run, so this is the cheapest
+ * generator for very large mazes.</p>
+ *
+ * @see <a href="http://www.astrolog.org/labyrnth/algrithm.htm">Think Labyrinth:
+ * Maze Algorithms</a>
+ */
+public class SidewinderGenerator extends MazeGenerator {
+
+    /**
+     * Creates a new Sidewinder maze generator.
+     *
+     * @param width the maze width
+     * @param height the maze height
+     */
+    public SidewinderGenerator(int width, int height) {
+        super(width, height);
+    }
+
+    /**
+     * Generate the maze.
+     */
+    @Override
+    protected void generateMaze() {
+        int width = getWidth();
+        int height = getHeight();
+        SplittableRandom rand = getRandom();
+
+        for (int x = 0; x < width - 1; x++) {
+            carveUnchecked(x, 0, RIGHT);
+        }
+
+        for (int y = 1; y < height; y++) {
+            int runStart = 0;
+            for (int x = 0; x < width; x++) {
+                if (x == width - 1 || rand.nextBoolean()) {
+                    // Close the run with an opening upwards
+                    carveUnchecked(runStart + rand.nextInt(x - runStart + 1), y, UP);
+                    runStart = x + 1;
+                } else {
+                    carveUnchecked(x, y, RIGHT);
+                }
+            }
+        }
+
+        long cells = (long) width * height;
+        recordWalk(cells, cells - 1, 0, 0);
+    }
+
+    /**
+     * Returns a string representation of this object.
+     *
+     * @return a string representation of this object.
+     */
+    @Override
+    public String toString() {
+        return "Sidewinder maze generator";
+    }
+}
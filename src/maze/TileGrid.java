@@ -0,0 +1,251 @@
+package maze;
+
+import java.util.Arrays;
+
+/**
+ * A grid of tiles, each either blocked or open, packed 64 to a
+ * <code>long</code>. Rows are stored one after another, each starting on a
+ * new word, so tile <code>(x, y)</code> is bit <code>x % 64</code> of word
+ * <code>y * getRowWords() + x / 64</code>.
+ * <p>
+ * {@link #fromMaze(MazeView)} lays out a maze the way {@link CanvasMaze}
+ * draws it: every cell, wall and corner is one tile, so a maze of
+ * <code>w</code> by <code>h</code> cells becomes
+ * <code>2w + 1</code> by <code>2h + 1</code> tiles. The tiles are built a
+ * word at a time from the packed walls, rather than one tile at a time.</p>
+ */
+public final class TileGrid {
+
+    private final int width;
+    private final int height;
+    private final int rowWords;
+    private final long[] bits;
+
+    /**
+     * Creates a new grid with every tile open.
+     *
+     * @param width the width, in tiles
+     * @param height the height, in tiles
+     * @throws IllegalArgumentException if either size is non-positive or the
+     * grid is too big for one array.
+     */
+    public TileGrid(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Size must be positive " + width + " " + height);
+        }
+        long words = (long) ((width + 63) >>> 6) * height;
+        if (words > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many tiles: " + width + " " + height);
+        }
+
+        this.width = width;
+        this.height = height;
+        this.rowWords = (width + 63) >>> 6;
+        this.bits = new long[(int) words];
+    }
+
+    /**
+     * Lays out a maze as tiles. Corners and walls that are present are
+     * blocked, as is the whole outer border; cells and missing walls are
+     * open.
+     *
+     * @param view the maze
+     * @return the tiles, <code>2w + 1</code> by <code>2h + 1</code>.
+     */
+    public static TileGrid fromMaze(MazeView view) {
+        int cellsX = view.getWidth();
+        int cellsY = view.getHeight();
+        TileGrid grid = new TileGrid(cellsX * 2 + 1, cellsY * 2 + 1);
+
+        // Every other tile of an even row is a corner
+        long[] corners = new long[grid.rowWords];
+        for (int x = 0; x < grid.width; x += 2) {
+            corners[x >>> 6] |= 1L << x;
+        }
+
+        long[] walls = new long[(cellsX + 64) >>> 6];
+        for (int ty = 1; ty < grid.height - 1; ty++) {
+            int base = ty * grid.rowWords;
+            if ((ty & 1) == 0) {
+                // Corners, and the walls above cells on the odd tiles
+                readWalls(view, ty >>> 1, true, walls);
+                spread(walls, cellsX, grid.bits, base, 1);
+                for (int w = 0; w < grid.rowWords; w++) {
+                    grid.bits[base + w] |= corners[w];
+                }
+            } else {
+                // The walls left of cells, and the right border, on the even
+                // tiles
+                readWalls(view, ty >>> 1, false, walls);
+                spread(walls, cellsX + 1, grid.bits, base, 0);
+            }
+        }
+
+        // The outer border is always solid
+        for (int ty = 0; ty < grid.height; ty++) {
+            grid.set(0, ty, true);
+            grid.set(grid.width - 1, ty, true);
+        }
+        Arrays.fill(grid.bits, 0, grid.rowWords, -1L);
+        Arrays.fill(grid.bits, (grid.height - 1) * grid.rowWords, grid.height * grid.rowWords, -1L);
+        grid.clearTails();
+        return grid;
+    }
+
+    /**
+     * Reads one row of walls as packed bits: the walls above the cells of a
+     * row, or the walls to the left of each cell plus the right border.
+     *
+     * @param view the maze
+     * @param y the row of cells
+     * @param above whether to read the walls above the cells
+     * @param dst receives the walls
+     */
+    private static void readWalls(MazeView view, int y, boolean above, long[] dst) {
+        int cellsX = view.getWidth();
+        if (view instanceof MazeGenerator) {
+            MazeGenerator maze = (MazeGenerator) view;
+            if (above) {
+                maze.getHorizWalls().copyBits((long) y * cellsX, dst, cellsX);
+            } else {
+                maze.getVertWalls().copyBits((long) y * (cellsX + 1), dst, cellsX + 1);
+            }
+            return;
+        }
+
+        // Other views only give masks a row at a time
+        Arrays.fill(dst, 0L);
+        byte[] masks = new byte[cellsX];
+        view.getRowMasks(y, masks);
+        int bit = above ? MazeView.WALL_UP : MazeView.WALL_LEFT;
+        for (int x = 0; x < cellsX; x++) {
+            if ((masks[x] & bit) != 0) {
+                dst[x >>> 6] |= 1L << x;
+            }
+        }
+        if (!above && (masks[cellsX - 1] & MazeView.WALL_RIGHT) != 0) {
+            dst[cellsX >>> 6] |= 1L << cellsX;
+        }
+    }
+
+    /**
+     * Spreads packed bits out to every other bit of a row, so that source bit
+     * <code>i</code> lands on tile <code>2i + offset</code>. This works 32
+     * source bits at a time.
+     *
+     * @param src the source bits
+     * @param count the number of source bits
+     * @param dst the destination words
+     * @param base the first word of the destination row
+     * @param offset 0 or 1
+     */
+    private static void spread(long[] src, int count, long[] dst, int base, int offset) {
+        int halves = (count + 31) >>> 5;
+        for (int h = 0; h < halves; h++) {
+            long v = (src[h >>> 1] >>> ((h & 1) << 5)) & 0xffffffffL;
+            v = (v | (v << 16)) & 0x0000ffff0000ffffL;
+            v = (v | (v << 8)) & 0x00ff00ff00ff00ffL;
+            v = (v | (v << 4)) & 0x0f0f0f0f0f0f0f0fL;
+            v = (v | (v << 2)) & 0x3333333333333333L;
+            v = (v | (v << 1)) & 0x5555555555555555L;
+
+            // Source bit 32h + i becomes tile 64h + 2i + offset
+            dst[base + h] |= v << offset;
+            if (offset != 0 && (v >>> 63) != 0) {
+                dst[base + h + 1] |= 1L;
+            }
+        }
+    }
+
+    /**
+     * Clears the bits past the end of each row.
+     */
+    private void clearTails() {
+        int tail = width & 63;
+        if (tail == 0) {
+            return;
+        }
+        long mask = (1L << tail) - 1;
+        for (int y = 0; y < height; y++) {
+            bits[y * rowWords + rowWords - 1] &= mask;
+        }
+    }
+
+    /**
+     * Gets the width, in tiles.
+     *
+     * @return the width in tiles.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the height, in tiles.
+     *
+     * @return the height in tiles.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the number of words in each row.
+     *
+     * @return the words per row.
+     */
+    public int getRowWords() {
+        return rowWords;
+    }
+
+    /**
+     * Gets one word of a row. Bit <code>j</code> is tile
+     * <code>wordIndex * 64 + j</code>.
+     *
+     * @param y the row
+     * @param wordIndex the word within the row
+     * @return the word.
+     * @throws IndexOutOfBoundsException if the row or word is out of range.
+     */
+    public long getWord(int y, int wordIndex) {
+        if (y < 0 || height <= y || wordIndex < 0 || rowWords <= wordIndex) {
+            throw new IndexOutOfBoundsException("Word out of range: " + y + " " + wordIndex);
+        }
+        return bits[y * rowWords + wordIndex];
+    }
+
+    /**
+     * Checks if a tile is blocked. Everything outside the grid counts as
+     * blocked.
+     *
+     * @param x the tile's X-coordinate
+     * @param y the tile's Y-coordinate
+     * @return whether the tile is blocked.
+     */
+    public boolean isBlocked(int x, int y) {
+        if (x < 0 || width <= x || y < 0 || height <= y) {
+            return true;
+        }
+        return (bits[y * rowWords + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    /**
+     * Blocks or opens a tile.
+     *
+     * @param x the tile's X-coordinate
+     * @param y the tile's Y-coordinate
+     * @param blocked whether the tile is blocked
+     * @throws IndexOutOfBoundsException if the tile is outside the grid.
+     */
+    public void set(int x, int y, boolean blocked) {
+        if (x < 0 || width <= x || y < 0 || height <= y) {
+            throw new IndexOutOfBoundsException("Tile out of range: " + x + " " + y);
+        }
+        int w = y * rowWords + (x >>> 6);
+        if (blocked) {
+            bits[w] |= 1L << x;
+        } else {
+            bits[w] &= ~(1L << x);
+        }
+    }
+}
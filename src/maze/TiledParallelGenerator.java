@@ -0,0 +1,195 @@
+package maze;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Implements a maze generator that splits the maze into tiles and carves them
+ * in parallel. Each tile gets its own Recursive Backtracking walk, and the
+ * tiles are then joined by opening one door along each edge of a random
+ * spanning tree over the tiles. Since every tile is a perfect maze and the
+ * doors form a tree, the whole maze is perfect too.
+ * <p>
+ * This produces the same texture as {@link RecursiveBacktracker} inside each
+ * tile, but the tile seams show up as long walls with a single door in them.
+ * Larger tiles hide the seams better; smaller tiles give more parallelism.</p>
+ * <p>
+ * Tiles in the same row of tiles share words of wall storage, so a row of
+ * tiles (a band) is carved by one task. Neighbouring bands can also share a
+ * word at their boundary, so the even bands are carved first and then the odd
+ * ones. Bands are made at least 64 walls tall so that two bands of the same
+ * parity never touch the same word.</p>
+ */
+public class TiledParallelGenerator extends MazeGenerator {
+
+    /**
+     * The default tile width and height, in cells.
+     */
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    private final int tileWidth;
+    private final int tileHeight;
+    private final ForkJoinPool pool;
+
+    /**
+     * Creates a new tiled generator with the default tile size that runs on
+     * the common pool.
+     *
+     * @param width the maze width
+     * @param height the maze height
+     */
+    public TiledParallelGenerator(int width, int height) {
+        this(width, height, DEFAULT_TILE_SIZE, DEFAULT_TILE_SIZE,
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new tiled generator.
+     *
+     * @param width the maze width
+     * @param height the maze height
+     * @param tileWidth the tile width, in cells
+     * @param tileHeight the tile height, in cells
+     * @param pool the pool that carves the tiles
+     * @throws IllegalArgumentException if either tile size is non-positive.
+     */
+    public TiledParallelGenerator(int width, int height,
+            int tileWidth, int tileHeight, ForkJoinPool pool) {
+        super(width, height);
+
+        if (tileWidth <= 0 || tileHeight <= 0) {
+            throw new IllegalArgumentException("Tile size must be positive " + tileWidth + " " + tileHeight);
+        }
+
+        this.tileWidth = Math.min(tileWidth, width);
+        this.tileHeight = Math.min(height, Math.max(tileHeight, (63 + width) / width));
+        this.pool = pool;
+    }
+
+    /**
+     * Generate the maze.
+     */
+    @Override
+    protected void generateMaze() {
+        int tilesX = (getWidth() + tileWidth - 1) / tileWidth;
+        int tilesY = (getHeight() + tileHeight - 1) / tileHeight;
+
+        // Split off one source of randomness per band, in order, so that the
+        // maze doesn't depend on how the bands are scheduled
+        SplittableRandom rand = getRandom();
+        SplittableRandom[] bandRandoms = new SplittableRandom[tilesY];
+        for (int ty = 0; ty < tilesY; ty++) {
+            bandRandoms[ty] = rand.split();
+        }
+
+        // Carve the even bands, then the odd ones
+        Phase even = new Phase(0, bandRandoms);
+        Phase odd = new Phase(1, bandRandoms);
+        pool.invoke(even);
+        pool.invoke(odd);
+
+        long backtracks = 0;
+        long peakDepth = 0;
+        for (Phase phase : new Phase[]{even, odd}) {
+            for (Band band : phase.bands) {
+                backtracks += band.backtracks;
+                peakDepth = Math.max(peakDepth, band.peakDepth);
+            }
+        }
+        long cells = (long) getWidth() * getHeight();
+        recordWalk(cells, cells - 1, backtracks, peakDepth);
+
+        // Join the tiles along a random spanning tree. This walks the tree
+        // directly so that it isn't reported as a generation of its own.
+        RecursiveBacktracker tree = new RecursiveBacktracker(tilesX, tilesY);
+        BacktrackWalker.current().walk(tree, 0, 0, tilesX, tilesY, 0, 0,
+                new SplittableRandom(rand.nextLong()));
+        for (int ty = 0; ty < tilesY; ty++) {
+            for (int tx = 0; tx < tilesX; tx++) {
+                int x0 = tx * tileWidth;
+                int y0 = ty * tileHeight;
+                if (tx < tilesX - 1 && !tree.isWallPresent(tx, ty, RIGHT)) {
+                    int h = Math.min(tileHeight, getHeight() - y0);
+                    carveUnchecked(x0 + tileWidth - 1, y0 + rand.nextInt(h), RIGHT);
+                }
+                if (ty < tilesY - 1 && !tree.isWallPresent(tx, ty, DOWN)) {
+                    int w = Math.min(tileWidth, getWidth() - x0);
+                    carveUnchecked(x0 + rand.nextInt(w), y0 + tileHeight - 1, DOWN);
+                }
+            }
+        }
+    }
+
+    /**
+     * Carves every band of one parity in parallel.
+     */
+    private final class Phase extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int parity;
+        private final SplittableRandom[] bandRandoms;
+        private final List<Band> bands = new ArrayList<>();
+
+        Phase(int parity, SplittableRandom[] bandRandoms) {
+            this.parity = parity;
+            this.bandRandoms = bandRandoms;
+        }
+
+        @Override
+        protected void compute() {
+            for (int ty = parity; ty < bandRandoms.length; ty += 2) {
+                bands.add(new Band(ty, bandRandoms[ty]));
+            }
+            invokeAll(bands);
+        }
+    }
+
+    /**
+     * Carves the tiles in one row of tiles, left to right.
+     */
+    private final class Band extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int ty;
+        private final SplittableRandom rand;
+
+        // Statistics, summed over the band's tiles
+        private long backtracks;
+        private long peakDepth;
+
+        Band(int ty, SplittableRandom rand) {
+            this.ty = ty;
+            this.rand = rand;
+        }
+
+        @Override
+        protected void compute() {
+            BacktrackWalker walker = BacktrackWalker.current();
+
+            int y0 = ty * tileHeight;
+            int h = Math.min(tileHeight, getHeight() - y0);
+            for (int x0 = 0; x0 < getWidth(); x0 += tileWidth) {
+                int w = Math.min(tileWidth, getWidth() - x0);
+                walker.walk(TiledParallelGenerator.this, x0, y0, w, h,
+                        x0 + rand.nextInt(w), y0 + rand.nextInt(h), rand);
+                backtracks += walker.getBacktracks();
+                peakDepth = Math.max(peakDepth, walker.getPeakDepth());
+            }
+        }
+    }
+
+    /**
+     * Returns a string representation of this object.
+     *
+     * @return a string representation of this object.
+     */
+    @Override
+    public String toString() {
+        return "Tiled parallel maze generator";
+    }
+}
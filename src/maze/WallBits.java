@@ -0,0 +1,215 @@
+package maze;
+
+/**
+ * A fixed-size set of wall flags packed 64 to a <code>long</code>. Bit
+ * <code>i</code> lives in word <code>i / 64</code> at position
+ * <code>i % 64</code>, so a run of walls along a maze row can be read a whole
+ * word at a time.
+ * <p>
+ * A set bit means the wall is present. Bits past {@link #size()} in the last
+ * word are always zero. The words may live on the heap or in a memory-mapped
+ * file; all indexes are <code>long</code>s either way.</p>
+ */
+public abstract class WallBits {
+
+    private final long size;
+
+    /**
+     * Creates a new wall set of the given size. Only the implementations in
+     * this package may subclass this.
+     *
+     * @param size the number of walls
+     * @throws IllegalArgumentException if the size is negative.
+     */
+    WallBits(long size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Bad wall count: " + size);
+        }
+
+        this.size = size;
+    }
+
+    /**
+     * Creates a new heap-backed wall set with all walls absent.
+     *
+     * @param size the number of walls
+     * @return the new wall set.
+     * @throws IllegalArgumentException if the size is negative or too large
+     * to be stored in a single array.
+     */
+    public static WallBits allocate(long size) {
+        return new HeapWallBits(size);
+    }
+
+    /**
+     * Returns the number of 64-bit words needed to hold the given number of
+     * bits.
+     *
+     * @param bits the number of bits
+     * @return the number of words.
+     */
+    static long wordCount(long bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    /**
+     * Gets the number of walls in this set.
+     *
+     * @return the number of walls.
+     */
+    public final long size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of words backing this set.
+     *
+     * @return the number of words.
+     */
+    public final long getWordCount() {
+        return wordCount(size);
+    }
+
+    /**
+     * Gets one word of wall bits. Bit <code>j</code> of word <code>w</code> is
+     * wall <code>w * 64 + j</code>.
+     *
+     * @param wordIndex the word index
+     * @return the word.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public final long getWord(long wordIndex) {
+        if (wordIndex < 0 || getWordCount() <= wordIndex) {
+            throw new IndexOutOfBoundsException("Word out of range: " + wordIndex);
+        }
+        return word(wordIndex);
+    }
+
+    /**
+     * Reads up to 64 consecutive wall bits starting at any bit index. Bit
+     * <code>j</code> of the result is wall <code>fromIndex + j</code>; bits
+     * at and above <code>count</code> are zero.
+     *
+     * @param fromIndex the first wall index
+     * @param count the number of walls to read, from 1 to 64
+     * @return the walls, packed into the low bits.
+     * @throws IllegalArgumentException if the count is out of range.
+     * @throws IndexOutOfBoundsException if the range is out of bounds.
+     */
+    public final long getBits(long fromIndex, int count) {
+        if (count < 1 || count > 64) {
+            throw new IllegalArgumentException("Bad count: " + count);
+        }
+        if (fromIndex < 0 || size - count < fromIndex) {
+            throw new IndexOutOfBoundsException("Range out of bounds: " + fromIndex + " " + count);
+        }
+
+        long w = fromIndex >>> 6;
+        int shift = (int) (fromIndex & 63);
+        long bits = word(w) >>> shift;
+        if (shift != 0 && shift + count > 64) {
+            bits |= word(w + 1) << (64 - shift);
+        }
+        return count == 64 ? bits : bits & ((1L << count) - 1);
+    }
+
+    /**
+     * Copies a run of wall bits into an array, packed from bit 0 the same way
+     * as this set. Bits of the last destination word past <code>count</code>
+     * are cleared.
+     *
+     * @param fromIndex the first wall index
+     * @param dst the destination, at least <code>(count + 63) / 64</code>
+     * words long
+     * @param count the number of walls to copy
+     * @throws IndexOutOfBoundsException if the range is out of bounds.
+     */
+    public final void copyBits(long fromIndex, long[] dst, int count) {
+        if (count < 0 || fromIndex < 0 || size - count < fromIndex) {
+            throw new IndexOutOfBoundsException("Range out of bounds: " + fromIndex + " " + count);
+        }
+
+        int words = (count + 63) >>> 6;
+        long w = fromIndex >>> 6;
+        int shift = (int) (fromIndex & 63);
+        if (shift == 0) {
+            for (int i = 0; i < words; i++) {
+                dst[i] = word(w + i);
+            }
+        } else {
+            long wordCount = getWordCount();
+            long next = word(w);
+            for (int i = 0; i < words; i++) {
+                long bits = next >>> shift;
+                next = w + i + 1 < wordCount ? word(w + i + 1) : 0;
+                dst[i] = bits | (next << (64 - shift));
+            }
+        }
+        if ((count & 63) != 0) {
+            dst[words - 1] &= (1L << count) - 1;
+        }
+    }
+
+    /**
+     * Sets every wall to present.
+     */
+    public void fill() {
+        long words = getWordCount();
+        for (long w = 0; w < words; w++) {
+            setWord(w, -1L);
+        }
+
+        // Keep the bits past the end clear
+        int tail = (int) (size & 63);
+        if (tail != 0) {
+            setWord(words - 1, (1L << tail) - 1);
+        }
+    }
+
+    /**
+     * Writes any changes back to the backing store. This does nothing for
+     * walls kept on the heap.
+     */
+    public void flush() {
+    }
+
+    /**
+     * Checks if a wall is present. The index is not range checked.
+     *
+     * @param index the wall index
+     * @return whether the wall is present.
+     */
+    public abstract boolean get(long index);
+
+    /**
+     * Removes a wall. The index is not range checked.
+     *
+     * @param index the wall index
+     * @return whether the wall was present before this call.
+     */
+    public abstract boolean clear(long index);
+
+    /**
+     * Adds a wall. The index is not range checked.
+     *
+     * @param index the wall index
+     * @return whether the wall was present before this call.
+     */
+    public abstract boolean set(long index);
+
+    /**
+     * Gets a word without checking the index.
+     *
+     * @param wordIndex the word index
+     * @return the word.
+     */
+    abstract long word(long wordIndex);
+
+    /**
+     * Sets a word without checking the index.
+     *
+     * @param wordIndex the word index
+     * @param value the new word
+     */
+    abstract void setWord(long wordIndex, long value);
+}
@@ -0,0 +1,156 @@
+package maze;
+
+import java.util.SplittableRandom;
+
+/**
+ * Implements a maze generator that uses Wilson's algorithm. Starting with only
+ * the starting cell in the maze, a random walk is taken from each cell outside
+ * the maze until it hits the maze; the walk, with its loops erased, is then
+ * carved into the maze.
+ * <p>
+ * Loops are erased for free by remembering only the last direction taken out
+ * of each cell: following those directions from the walk's first cell gives
+ * the loop-erased path.</p>
+ * <p>
+ * This produces a uniform spanning tree, meaning every possible perfect maze
+ * is equally likely, with no directional bias.</p>
+ * <p>
+ * Time is dominated by the first few walks, which wander a long way before
+ * they find the small initial maze; expect it to be several times slower than
+ * the other generators on large mazes. Memory is a byte per cell for the
+ * directions and a bit per cell for the maze flags.</p>
+ *
+ * @see <a href="http://www.astrolog.org/labyrnth/algrithm.htm">Think Labyrinth:
+ * Maze Algorithms</a>
+ */
+public class WilsonGenerator extends MazeGenerator {
+
+    /**
+     * Creates a new Wilson's algorithm maze generator. The maze initially
+     * holds <code>(0, 0)</code> unless {@link #setStart(int, int)} is called.
+     *
+     * @param width the maze width
+     * @param height the maze height
+     */
+    public WilsonGenerator(int width, int height) {
+        super(width, height);
+    }
+
+    /**
+     * Generate the maze.
+     */
+    @Override
+    protected void generateMaze() {
+        int width = getWidth();
+        int height = getHeight();
+        SplittableRandom rand = getRandom();
+
+        if ((long) width * height > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Too many cells: " + width + " " + height);
+        }
+        int cellCount = width * height;
+        byte[] directions = new byte[cellCount];
+        long[] inMaze = new long[(cellCount + 63) >>> 6];
+
+        int start = getStartY() * width + getStartX();
+        inMaze[start >>> 6] |= 1L << start;
+
+        // Every step of the random walks, and the steps kept
+        long steps = 0;
+        long carves = 0;
+
+        for (int first = 0; first < cellCount; first++) {
+            if (isSet(inMaze, first)) {
+                continue;
+            }
+
+            // Walk until the maze is reached, remembering the last exits
+            int x = first % width;
+            int y = first / width;
+            int cell = first;
+            while (!isSet(inMaze, cell)) {
+                int direction;
+                do {
+                    direction = rand.nextInt(4);
+                } while ((direction == UP && y == 0)
+                        || (direction == RIGHT && x == width - 1)
+                        || (direction == DOWN && y == height - 1)
+                        || (direction == LEFT && x == 0));
+
+                directions[cell] = (byte) direction;
+                steps++;
+                switch (direction) {
+                    case UP:
+                        y--;
+                        cell -= width;
+                        break;
+                    case RIGHT:
+                        x++;
+                        cell++;
+                        break;
+                    case DOWN:
+                        y++;
+                        cell += width;
+                        break;
+                    case LEFT:
+                        x--;
+                        cell--;
+                        break;
+                }
+            }
+
+            // Carve the loop-erased path into the maze
+            x = first % width;
+            y = first / width;
+            cell = first;
+            while (!isSet(inMaze, cell)) {
+                inMaze[cell >>> 6] |= 1L << cell;
+
+                int direction = directions[cell];
+                carveUnchecked(x, y, direction);
+                carves++;
+                switch (direction) {
+                    case UP:
+                        y--;
+                        cell -= width;
+                        break;
+                    case RIGHT:
+                        x++;
+                        cell++;
+                        break;
+                    case DOWN:
+                        y++;
+                        cell += width;
+                        break;
+                    case LEFT:
+                        x--;
+                        cell--;
+                        break;
+                }
+            }
+        }
+
+        recordWalk(cellCount, carves, steps - carves, 0);
+    }
+
+    /**
+     * Checks whether a bit is set in a bit array.
+     *
+     * @param bits the bit array
+     * @param index the bit index
+     * @return whether the bit is set.
+     */
+    private static boolean isSet(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Returns a string representation of this object.
+     *
+     * @return a string representation of this object.
+     */
+    @Override
+    public String toString() {
+        return "Wilson's algorithm maze generator";
+    }
+}